@@ -0,0 +1,38 @@
+package kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * A patient event that cannot be applied is retried, then published to {@code <topic>.DLT} with the
+ * exception in its headers. The listener container applies this to the serial mode through the error
+ * handler; the parallel mode retries and dead-letters in its workers with the same back-off and recoverer.
+ */
+@Configuration
+public class DeadLetterConfig {
+
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterRecoverer(KafkaTemplate<String, byte[]> kafkaTemplate) {
+        // Any partition: the dead-letter topic is auto-created and need not match the source's partitions
+        return new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, e) -> new TopicPartition(record.topic() + ".DLT", -1));
+    }
+
+    @Bean
+    public FixedBackOff retryBackOff(@Value("${analytics.consumer.retry.interval-ms:1000}") long intervalMs,
+                                     @Value("${analytics.consumer.retry.attempts:3}") long attempts) {
+        return new FixedBackOff(intervalMs, attempts - 1);
+    }
+
+    @Bean
+    public DefaultErrorHandler errorHandler(DeadLetterPublishingRecoverer deadLetterRecoverer,
+                                            FixedBackOff retryBackOff) {
+        return new DefaultErrorHandler(deadLetterRecoverer, retryBackOff);
+    }
+}
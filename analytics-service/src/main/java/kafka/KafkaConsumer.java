@@ -1,32 +1,172 @@
 package kafka;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.natanxds.common.logging.LogRateLimiter;
+import org.natanxds.analyticsservice.state.AnalyticsState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.backoff.BackOffExecution;
+import org.springframework.util.backoff.FixedBackOff;
 import patient.events.PatientEvent;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 @EnableKafka
-public class KafkaConsumer {
+public class KafkaConsumer implements ConsumerSeekAware {
 
     private static final Logger log = LoggerFactory.getLogger(
             KafkaConsumer.class);
+    private final AnalyticsState analyticsState;
+    private final KeyOrderedDispatcher dispatcher;
+    private final boolean parallel;
+    private final Map<TopicPartition, Long> committedOffsets = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, OffsetTracker> trackers = new ConcurrentHashMap<>();
+    private final LogRateLimiter receivedLogLimiter;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final FixedBackOff retryBackOff;
+
+    public KafkaConsumer(AnalyticsState analyticsState,
+                         KeyOrderedDispatcher dispatcher,
+                         DeadLetterPublishingRecoverer deadLetterRecoverer,
+                         FixedBackOff retryBackOff,
+                         @Value("${analytics.consumer.parallel.enabled:false}") boolean parallel,
+                         @Value("${logging.sampling.interval-ms:1000}") long logIntervalMs) {
+        this.analyticsState = analyticsState;
+        this.dispatcher = dispatcher;
+        this.parallel = parallel;
+        this.receivedLogLimiter = new LogRateLimiter(Duration.ofMillis(logIntervalMs));
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.retryBackOff = retryBackOff;
+    }
+
+    // Analytics state is the source of truth for positions: resume after the last snapshot, or rebuild from the start
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition partition : assignments.keySet()) {
+            trackers.remove(partition);
+            Long next = analyticsState.nextOffset(partition);
+            if (next != null) {
+                callback.seek(partition.topic(), partition.partition(), next);
+            } else {
+                callback.seekToBeginning(partition.topic(), partition.partition());
+            }
+        }
+    }
 
     @KafkaListener(topics="patient", groupId = "analytics-service")
-    public void consumeEvent(byte[] event) {
+    public void consumeEvent(ConsumerRecord<String, byte[]> record, Consumer<?, ?> consumer) throws InterruptedException {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        if (parallel) {
+            // Keyed by patient id so events of one patient keep their order; unkeyed records spread by offset
+            OffsetTracker tracker = trackers.computeIfAbsent(partition, p -> new OffsetTracker());
+            tracker.dispatched(record.offset());
+            Object key = record.key() != null ? record.key() : record.offset();
+            dispatcher.submit(key, () -> {
+                try {
+                    processOrDeadLetter(record);
+                } catch (InterruptedException e) {
+                    // Shutting down: the record stays in flight, so the watermark never passes it
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long watermark = tracker.completed(record.offset());
+                if (watermark >= 0) {
+                    analyticsState.advanceWatermark(partition, watermark);
+                }
+            });
+        } else {
+            // A failure propagates to the container's error handler, which retries and dead-letters (DeadLetterConfig)
+            process(record);
+            analyticsState.advanceWatermark(partition, record.offset() + 1);
+        }
+        commitSnapshotOffsets(consumer);
+    }
+
+    // The parallel counterpart of the container's error handler: a record only completes once it is applied or
+    // published to the dead-letter topic, and a failed dead-letter publish is retried rather than dropped
+    private void processOrDeadLetter(ConsumerRecord<String, byte[]> record) throws InterruptedException {
+        BackOffExecution backOff = retryBackOff.start();
+        while (true) {
+            try {
+                process(record);
+                return;
+            } catch (RuntimeException e) {
+                long delay = backOff.nextBackOff();
+                if (delay == BackOffExecution.STOP) {
+                    deadLetter(record, e);
+                    return;
+                }
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private void deadLetter(ConsumerRecord<String, byte[]> record, RuntimeException failure)
+            throws InterruptedException {
+        while (true) {
+            try {
+                deadLetterRecoverer.accept(record, failure);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Could not dead-letter patient event at offset {} of partition {}, retrying: {}",
+                        record.offset(), record.partition(), e.getMessage());
+                Thread.sleep(retryBackOff.getInterval());
+            }
+        }
+    }
+
+    private void process(ConsumerRecord<String, byte[]> record) {
         try {
-            PatientEvent patientEvent = PatientEvent.parseFrom(event);
-            // ... perform any business related to analytics here
+            PatientEvent patientEvent = PatientEvent.parseFrom(record.value());
+            analyticsState.apply(record, patientEvent);
 
-            log.info("Received Patient Event: [PatientId={},PatientName={},PatientEmail={}]",
-                    patientEvent.getPatientId(),
-                    patientEvent.getName(),
-                    patientEvent.getEmail());
+            long suppressed = receivedLogLimiter.tryAcquire();
+            if (suppressed >= 0) {
+                log.atInfo().setMessage("Received patient event")
+                        .addKeyValue("patientId", patientEvent.getPatientId())
+                        .addKeyValue("eventType", patientEvent.getEventType())
+                        .addKeyValue("offset", record.offset())
+                        .addKeyValue("suppressed", suppressed)
+                        .log();
+            }
         } catch (InvalidProtocolBufferException e) {
             log.error("Error deserializing event {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Kafka only ever sees offsets covered by a durable snapshot; they are informational (lag, tooling),
+    // since positions are restored from the snapshot itself
+    private void commitSnapshotOffsets(Consumer<?, ?> consumer) {
+        Map<TopicPartition, Long> snapshotOffsets = analyticsState.snapshotOffsets();
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            Long offset = snapshotOffsets.get(partition);
+            if (offset != null && !offset.equals(committedOffsets.get(partition))) {
+                commits.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        if (!commits.isEmpty()) {
+            consumer.commitAsync(commits, (offsets, e) -> {
+                if (e == null) {
+                    offsets.forEach((partition, offset) -> committedOffsets.put(partition, offset.offset()));
+                } else {
+                    log.warn("Could not commit snapshot offsets: {}", e.getMessage());
+                }
+            });
+        }
+    }
+}
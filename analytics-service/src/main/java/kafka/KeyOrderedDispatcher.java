@@ -0,0 +1,79 @@
+package kafka;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs tasks on a fixed set of worker lanes. Tasks with the same key always land on the same lane and run
+ * in submission order; different keys run concurrently. A full lane blocks the submitter, which holds back
+ * the consumer poll loop instead of buffering without bound.
+ */
+@Component
+public class KeyOrderedDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            KeyOrderedDispatcher.class);
+    private static final Runnable STOP = () -> { };
+
+    private final List<BlockingQueue<Runnable>> lanes;
+    private final List<Thread> workers;
+
+    public KeyOrderedDispatcher(@Value("${analytics.consumer.parallel.workers:0}") int workers,
+                                @Value("${analytics.consumer.parallel.queue-capacity:1024}") int queueCapacity) {
+        int count = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ArrayList<>(count);
+        this.workers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BlockingQueue<Runnable> lane = new ArrayBlockingQueue<>(queueCapacity);
+            lanes.add(lane);
+            Thread worker = Thread.ofPlatform().name("analytics-worker-" + i).daemon().unstarted(() -> run(lane));
+            this.workers.add(worker);
+        }
+        this.workers.forEach(Thread::start);
+    }
+
+    public void submit(Object key, Runnable task) throws InterruptedException {
+        lanes.get(Math.floorMod(spread(key.hashCode()), lanes.size())).put(task);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (BlockingQueue<Runnable> lane : lanes) {
+            lane.put(STOP);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static void run(BlockingQueue<Runnable> lane) {
+        while (true) {
+            Runnable task;
+            try {
+                task = lane.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == STOP) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Analytics worker task failed", e);
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
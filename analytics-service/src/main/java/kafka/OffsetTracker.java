@@ -0,0 +1,36 @@
+package kafka;
+
+import java.util.TreeSet;
+
+/**
+ * Offsets of one partition that were handed to workers but have not finished yet. The watermark is the
+ * lowest offset still in flight, or one past the highest dispatched offset when nothing is.
+ */
+class OffsetTracker {
+
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long highestDispatched = -1;
+    private long watermark = -1;
+
+    synchronized void dispatched(long offset) {
+        inFlight.add(offset);
+        highestDispatched = Math.max(highestDispatched, offset);
+    }
+
+    /**
+     * @return the new watermark, or -1 if completing this offset did not move it
+     */
+    synchronized long completed(long offset) {
+        boolean lowest = !inFlight.isEmpty() && inFlight.first() == offset;
+        inFlight.remove(offset);
+        if (!lowest) {
+            return -1;
+        }
+        long next = inFlight.isEmpty() ? highestDispatched + 1 : inFlight.first();
+        if (next <= watermark) {
+            return -1;
+        }
+        watermark = next;
+        return next;
+    }
+}
@@ -0,0 +1,173 @@
+package org.natanxds.analyticsservice.columnar;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Scans segments in parallel on the common fork-join pool. Within a segment rows are processed in batches:
+ * each predicate narrows a selection vector of row numbers with branch-free loops over primitive columns,
+ * and the survivors are counted into a dense array indexed by the segment-local group.
+ */
+@Component
+public class ColumnarQueryEngine {
+
+    static final String REGISTRATION_EVENT = "PATIENT_CREATED";
+
+    private static final int BATCH = 1024;
+    private static final int FIRST_YEAR = 1800;
+    private static final int LAST_YEAR = 2200;
+    private static final int FIRST_YEAR_DAY = (int) LocalDate.of(FIRST_YEAR, 1, 1).toEpochDay();
+    private static final int[] YEAR_OF_DAY = yearTable();
+
+    private final PatientEventStore patientEventStore;
+
+    public ColumnarQueryEngine(PatientEventStore patientEventStore) {
+        this.patientEventStore = patientEventStore;
+    }
+
+    public Map<String, Long> registrations(RegistrationQuery query) {
+        return patientEventStore.segments().parallelStream()
+                .map(segment -> scan(segment, query))
+                .reduce(new TreeMap<>(), (left, right) -> {
+                    TreeMap<String, Long> merged = new TreeMap<>(left);
+                    right.forEach((key, count) -> merged.merge(key, count, Long::sum));
+                    return merged;
+                });
+    }
+
+    static Map<String, Long> scan(EventSegment segment, RegistrationQuery query) {
+        Map<String, Long> result = new TreeMap<>();
+        int eventType = EventSegment.codeOf(segment.eventTypes, REGISTRATION_EVENT);
+        int region = query.region() == null ? -1 : EventSegment.codeOf(segment.regions, query.region());
+        if (eventType < 0 || (query.region() != null && region < 0)) {
+            return result;
+        }
+
+        int registeredLow = query.registeredFrom() == null ? DateColumn.NULL_DAY + 1
+                : (int) query.registeredFrom().toEpochDay();
+        int registeredHigh = query.registeredTo() == null ? Integer.MAX_VALUE : (int) query.registeredTo().toEpochDay();
+        int bornLow = query.bornFrom() == null ? DateColumn.NULL_DAY + 1
+                : (int) LocalDate.of(query.bornFrom(), 1, 1).toEpochDay();
+        int bornHigh = query.bornTo() == null ? Integer.MAX_VALUE
+                : (int) LocalDate.of(query.bornTo(), 12, 31).toEpochDay();
+        boolean filterRegistered = query.registeredFrom() != null || query.registeredTo() != null
+                || query.groupBy() == RegistrationQuery.GroupBy.DAY;
+        boolean filterBorn = query.bornFrom() != null || query.bornTo() != null
+                || query.groupBy() == RegistrationQuery.GroupBy.BIRTH_YEAR;
+
+        // Zone maps: skip the segment when its min/max cannot satisfy a date filter
+        if (filterRegistered && (!segment.registeredDates.hasValues()
+                || segment.registeredDates.max() < registeredLow || segment.registeredDates.min() > registeredHigh)) {
+            return result;
+        }
+        if (filterBorn && (!segment.birthDates.hasValues()
+                || segment.birthDates.max() < bornLow || segment.birthDates.min() > bornHigh)) {
+            return result;
+        }
+
+        int groupBase = switch (query.groupBy()) {
+            case REGION -> 0;
+            case DAY -> segment.registeredDates.min();
+            case BIRTH_YEAR -> yearOf(segment.birthDates.min());
+        };
+        long[] counts = new long[switch (query.groupBy()) {
+            case REGION -> segment.regions.length;
+            case DAY -> segment.registeredDates.max() - segment.registeredDates.min() + 1;
+            case BIRTH_YEAR -> yearOf(segment.birthDates.max()) - groupBase + 1;
+        }];
+
+        int[] selection = new int[BATCH];
+        int[] registered = new int[BATCH];
+        int[] born = new int[BATCH];
+        char[] eventTypes = segment.eventTypeCodes;
+        char[] regions = segment.regionCodes;
+
+        for (int start = 0; start < segment.rows; start += BATCH) {
+            int end = Math.min(segment.rows, start + BATCH);
+
+            int selected = 0;
+            for (int row = start; row < end; row++) {
+                selection[selected] = row;
+                selected += eventTypes[row] == eventType ? 1 : 0;
+            }
+            if (region >= 0) {
+                int kept = 0;
+                for (int i = 0; i < selected; i++) {
+                    int row = selection[i];
+                    selection[kept] = row;
+                    kept += regions[row] == region ? 1 : 0;
+                }
+                selected = kept;
+            }
+            if (filterRegistered) {
+                segment.registeredDates.decode(start, end, registered);
+                selected = between(selection, selected, registered, start, registeredLow, registeredHigh);
+            }
+            if (filterBorn) {
+                segment.birthDates.decode(start, end, born);
+                selected = between(selection, selected, born, start, bornLow, bornHigh);
+            }
+
+            switch (query.groupBy()) {
+                case REGION -> {
+                    for (int i = 0; i < selected; i++) {
+                        counts[regions[selection[i]]]++;
+                    }
+                }
+                case DAY -> {
+                    for (int i = 0; i < selected; i++) {
+                        counts[registered[selection[i] - start] - groupBase]++;
+                    }
+                }
+                case BIRTH_YEAR -> {
+                    for (int i = 0; i < selected; i++) {
+                        counts[yearOf(born[selection[i] - start]) - groupBase]++;
+                    }
+                }
+            }
+        }
+
+        for (int group = 0; group < counts.length; group++) {
+            if (counts[group] > 0) {
+                String key = switch (query.groupBy()) {
+                    case REGION -> segment.regions[group];
+                    case DAY -> LocalDate.ofEpochDay(groupBase + group).toString();
+                    case BIRTH_YEAR -> String.valueOf(groupBase + group);
+                };
+                result.put(key, counts[group]);
+            }
+        }
+        return result;
+    }
+
+    private static int between(int[] selection, int selected, int[] values, int offset, int low, int high) {
+        int kept = 0;
+        for (int i = 0; i < selected; i++) {
+            int row = selection[i];
+            int value = values[row - offset];
+            selection[kept] = row;
+            kept += value >= low & value <= high ? 1 : 0;
+        }
+        return kept;
+    }
+
+    private static int yearOf(int epochDay) {
+        int index = epochDay - FIRST_YEAR_DAY;
+        return index >= 0 && index < YEAR_OF_DAY.length ? YEAR_OF_DAY[index] : LocalDate.ofEpochDay(epochDay).getYear();
+    }
+
+    private static int[] yearTable() {
+        int[] table = new int[(int) (LocalDate.of(LAST_YEAR, 1, 1).toEpochDay() - FIRST_YEAR_DAY)];
+        int day = 0;
+        for (int year = FIRST_YEAR; year < LAST_YEAR; year++) {
+            int length = LocalDate.of(year, 1, 1).lengthOfYear();
+            Arrays.fill(table, day, day + length, year);
+            day += length;
+        }
+        return table;
+    }
+}
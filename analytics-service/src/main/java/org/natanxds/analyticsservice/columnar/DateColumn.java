@@ -0,0 +1,117 @@
+package org.natanxds.analyticsservice.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Epoch-day column stored as unsigned 16-bit deltas from the segment minimum, which covers ~179 years.
+ * Wider ranges fall back to plain ints. Missing dates decode to {@link #NULL_DAY}.
+ */
+final class DateColumn {
+
+    static final int NULL_DAY = Integer.MIN_VALUE;
+
+    private static final char NULL_DELTA = Character.MAX_VALUE;
+
+    private final int min;
+    private final int max;
+    private final char[] deltas;
+    private final int[] days;
+
+    private DateColumn(int min, int max, char[] deltas, int[] days) {
+        this.min = min;
+        this.max = max;
+        this.deltas = deltas;
+        this.days = days;
+    }
+
+    static DateColumn encode(int[] values, int rows) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            if (values[i] != NULL_DAY) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        if (min > max) {
+            char[] deltas = new char[rows];
+            Arrays.fill(deltas, NULL_DELTA);
+            return new DateColumn(0, -1, deltas, null);
+        }
+        if ((long) max - min >= NULL_DELTA) {
+            return new DateColumn(min, max, null, Arrays.copyOf(values, rows));
+        }
+        char[] deltas = new char[rows];
+        for (int i = 0; i < rows; i++) {
+            deltas[i] = values[i] == NULL_DAY ? NULL_DELTA : (char) (values[i] - min);
+        }
+        return new DateColumn(min, max, deltas, null);
+    }
+
+    boolean hasValues() {
+        return min <= max;
+    }
+
+    int min() {
+        return min;
+    }
+
+    int max() {
+        return max;
+    }
+
+    int get(int row) {
+        if (days != null) {
+            return days[row];
+        }
+        char delta = deltas[row];
+        return delta == NULL_DELTA ? NULL_DAY : min + delta;
+    }
+
+    /**
+     * Decodes rows {@code [from, to)} into {@code out[0 .. to - from)}.
+     */
+    void decode(int from, int to, int[] out) {
+        if (days != null) {
+            System.arraycopy(days, from, out, 0, to - from);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            char delta = deltas[i];
+            out[i - from] = delta == NULL_DELTA ? NULL_DAY : min + delta;
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(min);
+        out.writeInt(max);
+        out.writeBoolean(days != null);
+        if (days != null) {
+            for (int day : days) {
+                out.writeInt(day);
+            }
+        } else {
+            for (char delta : deltas) {
+                out.writeChar(delta);
+            }
+        }
+    }
+
+    static DateColumn readFrom(ByteBuffer in, int rows) {
+        int min = in.getInt();
+        int max = in.getInt();
+        if (in.get() != 0) {
+            int[] days = new int[rows];
+            in.asIntBuffer().get(days);
+            in.position(in.position() + rows * Integer.BYTES);
+            return new DateColumn(min, max, null, days);
+        }
+        char[] deltas = new char[rows];
+        in.asCharBuffer().get(deltas);
+        in.position(in.position() + rows * Character.BYTES);
+        return new DateColumn(min, max, deltas, null);
+    }
+}
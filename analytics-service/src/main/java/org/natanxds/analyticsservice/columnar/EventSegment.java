@@ -0,0 +1,91 @@
+package org.natanxds.analyticsservice.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable block of up to {@link #MAX_ROWS} patient events stored column by column. Strings are
+ * dictionary-encoded per segment; since a segment never has more than 65536 rows, every code fits in a char.
+ */
+final class EventSegment {
+
+    static final int MAX_ROWS = 1 << 16;
+
+    final int rows;
+    final String[] eventTypes;
+    final char[] eventTypeCodes;
+    final String[] regions;
+    final char[] regionCodes;
+    final DateColumn birthDates;
+    final DateColumn registeredDates;
+
+    EventSegment(int rows, String[] eventTypes, char[] eventTypeCodes, String[] regions, char[] regionCodes,
+                 DateColumn birthDates, DateColumn registeredDates) {
+        this.rows = rows;
+        this.eventTypes = eventTypes;
+        this.eventTypeCodes = eventTypeCodes;
+        this.regions = regions;
+        this.regionCodes = regionCodes;
+        this.birthDates = birthDates;
+        this.registeredDates = registeredDates;
+    }
+
+    static int codeOf(String[] dictionary, String value) {
+        for (int code = 0; code < dictionary.length; code++) {
+            if (dictionary[code].equals(value)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(rows);
+        writeDictionary(out, eventTypes, eventTypeCodes);
+        writeDictionary(out, regions, regionCodes);
+        birthDates.writeTo(out);
+        registeredDates.writeTo(out);
+    }
+
+    static EventSegment readFrom(ByteBuffer in) {
+        int rows = in.getInt();
+        String[] eventTypes = readStrings(in);
+        char[] eventTypeCodes = readCodes(in, rows);
+        String[] regions = readStrings(in);
+        char[] regionCodes = readCodes(in, rows);
+        DateColumn birthDates = DateColumn.readFrom(in, rows);
+        DateColumn registeredDates = DateColumn.readFrom(in, rows);
+        return new EventSegment(rows, eventTypes, eventTypeCodes, regions, regionCodes, birthDates, registeredDates);
+    }
+
+    private static void writeDictionary(DataOutputStream out, String[] dictionary, char[] codes) throws IOException {
+        out.writeInt(dictionary.length);
+        for (String value : dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (char code : codes) {
+            out.writeChar(code);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static char[] readCodes(ByteBuffer in, int rows) {
+        char[] codes = new char[rows];
+        in.asCharBuffer().get(codes);
+        in.position(in.position() + rows * Character.BYTES);
+        return codes;
+    }
+}
@@ -0,0 +1,208 @@
+package org.natanxds.analyticsservice.columnar;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import patient.events.PatientEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only columnar history of patient events. Row {@code n} lives in segment {@code n / MAX_ROWS};
+ * each segment is persisted as its own file, and the tail segment is rewritten on every snapshot.
+ */
+@Component
+public class PatientEventStore {
+
+    private static final int MAGIC = 0x41434F4C;
+    private static final int VERSION = 1;
+    private static final String UNKNOWN_REGION = "unknown";
+
+    private final Path directory;
+    private final List<EventSegment> sealed = new CopyOnWriteArrayList<>();
+    private SegmentBuilder active = new SegmentBuilder();
+    private int persistedSealed;
+
+    public PatientEventStore(@Value("${analytics.columnar.directory}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    public synchronized void append(PatientEvent event, long timestampMs) {
+        int registeredDay = parseDay(event.getRegisteredDate());
+        if (registeredDay == DateColumn.NULL_DAY) {
+            registeredDay = (int) LocalDate.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneOffset.UTC).toEpochDay();
+        }
+        active.append(event.getEventType(), region(event.getAddress()), parseDay(event.getDateOfBirth()),
+                registeredDay);
+        if (active.isFull()) {
+            sealed.add(active.seal());
+            active = new SegmentBuilder();
+        }
+    }
+
+    public synchronized long rowCount() {
+        return (long) sealed.size() * EventSegment.MAX_ROWS + active.rows();
+    }
+
+    /**
+     * Sealed segments plus a copy of the tail, for a consistent scan without holding the lock.
+     */
+    synchronized List<EventSegment> segments() {
+        List<EventSegment> segments = new ArrayList<>(sealed.size() + 1);
+        segments.addAll(sealed);
+        if (active.rows() > 0) {
+            segments.add(active.seal());
+        }
+        return segments;
+    }
+
+    /**
+     * Writes every row appended so far. Must complete before a snapshot referring to {@link #rowCount()}
+     * is written.
+     */
+    public void persist() throws IOException {
+        List<EventSegment> unwritten;
+        int firstId;
+        EventSegment tail;
+        synchronized (this) {
+            firstId = persistedSealed;
+            unwritten = new ArrayList<>(sealed.subList(persistedSealed, sealed.size()));
+            tail = active.rows() > 0 ? active.seal() : null;
+        }
+
+        Files.createDirectories(directory);
+        for (int i = 0; i < unwritten.size(); i++) {
+            write(firstId + i, unwritten.get(i));
+        }
+        if (tail != null) {
+            write(firstId + unwritten.size(), tail);
+        }
+        synchronized (this) {
+            persistedSealed = firstId + unwritten.size();
+        }
+    }
+
+    /**
+     * Loads the first {@code rows} rows. Segment files may hold more rows than the snapshot that refers
+     * to them; those rows are dropped here and re-consumed from Kafka.
+     */
+    public synchronized void load(long rows) throws IOException {
+        sealed.clear();
+        active = new SegmentBuilder();
+        int segmentCount = (int) ((rows + EventSegment.MAX_ROWS - 1) / EventSegment.MAX_ROWS);
+        for (int id = 0; id < segmentCount; id++) {
+            int expected = (int) Math.min(EventSegment.MAX_ROWS, rows - (long) id * EventSegment.MAX_ROWS);
+            EventSegment segment = read(segmentPath(id));
+            if (segment.rows < expected) {
+                throw new IOException("Segment " + id + " has " + segment.rows + " rows, expected " + expected);
+            }
+            if (expected == EventSegment.MAX_ROWS) {
+                sealed.add(segment);
+            } else {
+                active = SegmentBuilder.from(segment, expected);
+            }
+        }
+        persistedSealed = sealed.size();
+        deleteSegmentsFrom(segmentCount);
+    }
+
+    public synchronized void clear() throws IOException {
+        sealed.clear();
+        active = new SegmentBuilder();
+        persistedSealed = 0;
+        deleteSegmentsFrom(0);
+    }
+
+    private void write(int id, EventSegment segment) throws IOException {
+        Path temp = directory.resolve(segmentPath(id).getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            segment.writeTo(out);
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).flip());
+            channel.force(true);
+        }
+        Files.move(temp, segmentPath(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static EventSegment read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bodyLength = buffer.capacity() - Long.BYTES;
+            if (bodyLength < 0) {
+                throw new IOException("Truncated segment " + path);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, bodyLength));
+            if (crc.getValue() != buffer.getLong(bodyLength)) {
+                throw new IOException("Checksum mismatch in segment " + path);
+            }
+            ByteBuffer body = buffer.slice(0, bodyLength);
+            if (body.getInt() != MAGIC || body.getInt() != VERSION) {
+                throw new IOException("Unsupported segment " + path);
+            }
+            return EventSegment.readFrom(body);
+        }
+    }
+
+    private void deleteSegmentsFrom(int firstId) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(".col")
+                        && Integer.parseInt(name.substring(8, name.length() - 4)) >= firstId) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("segment-%08d.col", id));
+    }
+
+    private static int parseDay(String isoDate) {
+        if (isoDate == null || isoDate.isEmpty()) {
+            return DateColumn.NULL_DAY;
+        }
+        try {
+            return (int) LocalDate.parse(isoDate).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return DateColumn.NULL_DAY;
+        }
+    }
+
+    // Addresses look like "123 Main St, Springfield"; the region is the last comma-separated part
+    private static String region(String address) {
+        int comma = address.lastIndexOf(',');
+        String region = comma >= 0 ? address.substring(comma + 1).trim() : "";
+        return region.isEmpty() ? UNKNOWN_REGION : region;
+    }
+}
@@ -0,0 +1,22 @@
+package org.natanxds.analyticsservice.columnar;
+
+import java.time.LocalDate;
+
+/**
+ * Counts PATIENT_CREATED events grouped by {@code groupBy}. Every filter is optional and inclusive.
+ */
+public record RegistrationQuery(
+        GroupBy groupBy,
+        String region,
+        LocalDate registeredFrom,
+        LocalDate registeredTo,
+        Integer bornFrom,
+        Integer bornTo
+) {
+
+    public enum GroupBy {
+        BIRTH_YEAR,
+        REGION,
+        DAY
+    }
+}
@@ -0,0 +1,65 @@
+package org.natanxds.analyticsservice.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable tail segment that events are appended to until it holds {@link EventSegment#MAX_ROWS} rows.
+ */
+final class SegmentBuilder {
+
+    private final Map<String, Character> eventTypeCodes = new HashMap<>();
+    private final List<String> eventTypes = new ArrayList<>();
+    private final Map<String, Character> regionCodes = new HashMap<>();
+    private final List<String> regions = new ArrayList<>();
+    private final char[] eventTypeColumn = new char[EventSegment.MAX_ROWS];
+    private final char[] regionColumn = new char[EventSegment.MAX_ROWS];
+    private final int[] birthDays = new int[EventSegment.MAX_ROWS];
+    private final int[] registeredDays = new int[EventSegment.MAX_ROWS];
+    private int rows;
+
+    static SegmentBuilder from(EventSegment segment, int rows) {
+        SegmentBuilder builder = new SegmentBuilder();
+        for (int i = 0; i < rows; i++) {
+            builder.append(segment.eventTypes[segment.eventTypeCodes[i]], segment.regions[segment.regionCodes[i]],
+                    segment.birthDates.get(i), segment.registeredDates.get(i));
+        }
+        return builder;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    boolean isFull() {
+        return rows == EventSegment.MAX_ROWS;
+    }
+
+    void append(String eventType, String region, int birthDay, int registeredDay) {
+        eventTypeColumn[rows] = code(eventTypeCodes, eventTypes, eventType);
+        regionColumn[rows] = code(regionCodes, regions, region);
+        birthDays[rows] = birthDay;
+        registeredDays[rows] = registeredDay;
+        rows++;
+    }
+
+    EventSegment seal() {
+        return new EventSegment(rows,
+                eventTypes.toArray(String[]::new), Arrays.copyOf(eventTypeColumn, rows),
+                regions.toArray(String[]::new), Arrays.copyOf(regionColumn, rows),
+                DateColumn.encode(birthDays, rows), DateColumn.encode(registeredDays, rows));
+    }
+
+    private static char code(Map<String, Character> codes, List<String> dictionary, String value) {
+        Character code = codes.get(value);
+        if (code == null) {
+            code = (char) dictionary.size();
+            codes.put(value, code);
+            dictionary.add(value);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,60 @@
+package org.natanxds.analyticsservice.controller;
+
+import org.natanxds.analyticsservice.columnar.ColumnarQueryEngine;
+import org.natanxds.analyticsservice.columnar.RegistrationQuery;
+import org.natanxds.analyticsservice.replica.PatientReplica;
+import org.natanxds.analyticsservice.state.AnalyticsState;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/analytics")
+public class AnalyticsController {
+    private final AnalyticsState analyticsState;
+    private final ColumnarQueryEngine columnarQueryEngine;
+    private final ObjectProvider<PatientReplica> patientReplica;
+
+    public AnalyticsController(AnalyticsState analyticsState, ColumnarQueryEngine columnarQueryEngine,
+                               ObjectProvider<PatientReplica> patientReplica) {
+        this.analyticsState = analyticsState;
+        this.columnarQueryEngine = columnarQueryEngine;
+        this.patientReplica = patientReplica;
+    }
+
+    @GetMapping("/counters")
+    public ResponseEntity<Map<String, Long>> getCounters() {
+        return ResponseEntity.ok().body(analyticsState.counters());
+    }
+
+    @GetMapping("/registrations")
+    public ResponseEntity<Map<String, Long>> getRegistrations(
+            @RequestParam("groupBy") RegistrationQuery.GroupBy groupBy,
+            @RequestParam(value = "region", required = false) String region,
+            @RequestParam(value = "registeredFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredFrom,
+            @RequestParam(value = "registeredTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredTo,
+            @RequestParam(value = "bornFrom", required = false) Integer bornFrom,
+            @RequestParam(value = "bornTo", required = false) Integer bornTo) {
+        return ResponseEntity.ok().body(columnarQueryEngine.registrations(
+                new RegistrationQuery(groupBy, region, registeredFrom, registeredTo, bornFrom, bornTo)));
+    }
+
+    @GetMapping("/patient-replica")
+    public ResponseEntity<Map<String, Object>> getPatientReplicaStatus() {
+        PatientReplica replica = patientReplica.getIfAvailable();
+        if (replica == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok().body(Map.of("restored", replica.isRestored(), "patients", replica.size()));
+    }
+}
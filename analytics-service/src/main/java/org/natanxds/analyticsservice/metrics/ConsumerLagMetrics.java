@@ -0,0 +1,39 @@
+package org.natanxds.analyticsservice.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code analytics.consumer.lag}: records of the patient topic this instance has not fetched yet, summed
+ * over its assigned partitions. It is taken from the consumer's position rather than the committed offsets,
+ * which only advance with each analytics snapshot and would report up to a snapshot interval of lag on an
+ * idle instance. The per-partition values come from the Kafka client metrics Spring Boot binds for every
+ * listener container.
+ */
+@Component
+public class ConsumerLagMetrics implements MeterBinder {
+
+    private static final String RECORDS_LAG = "kafka.consumer.fetch.manager.records.lag";
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("analytics.consumer.lag", registry, ConsumerLagMetrics::patientTopicLag)
+                .description("Records of the patient topic not yet fetched by this instance")
+                .baseUnit("records")
+                .register(registry);
+    }
+
+    private static double patientTopicLag(MeterRegistry registry) {
+        double lag = 0;
+        for (Gauge partitionLag : registry.find(RECORDS_LAG).tag("topic", "patient").gauges()) {
+            double value = partitionLag.value();
+            // NaN until the partition's first fetch
+            if (!Double.isNaN(value)) {
+                lag += value;
+            }
+        }
+        return lag;
+    }
+}
@@ -0,0 +1,54 @@
+package org.natanxds.analyticsservice.replica;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.natanxds.kafkareplica.CompactedTopicReplica;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+import patient.events.PatientState;
+
+import java.util.Optional;
+
+/**
+ * Local view of every patient, rebuilt from the compacted {@code patient-snapshot} topic published by
+ * patient-service, so patient lookups need neither patient-service nor its database.
+ */
+@Component
+@ConditionalOnProperty(name = "analytics.patient-replica.enabled", havingValue = "true")
+public class PatientReplica {
+
+    static final String TOPIC = "patient-snapshot";
+
+    // patient-service stamps snapshots and tombstones with the patient's updated_at_ms
+    static final String VERSION_HEADER = "updated-at-ms";
+
+    private final CompactedTopicReplica<PatientState> replica;
+
+    public PatientReplica(ConsumerFactory<String, byte[]> consumerFactory) {
+        this.replica = new CompactedTopicReplica<>(() -> consumerFactory.createConsumer(null, "replica-" + TOPIC),
+                TOPIC, VERSION_HEADER, PatientState::parseFrom);
+    }
+
+    @PostConstruct
+    public void start() {
+        replica.start();
+    }
+
+    public Optional<PatientState> find(String patientId) {
+        return Optional.ofNullable(replica.get(patientId));
+    }
+
+    public int size() {
+        return replica.size();
+    }
+
+    public boolean isRestored() {
+        return replica.isRestored();
+    }
+
+    @PreDestroy
+    public void close() {
+        replica.close();
+    }
+}
@@ -0,0 +1,225 @@
+package org.natanxds.analyticsservice.state;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.natanxds.analyticsservice.columnar.PatientEventStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import patient.events.PatientEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Materialized patient event counters and the columnar event history. Producer retries can publish an event
+ * twice at different offsets; those are dropped by event id through a bounded per-partition window.
+ * Records may be applied out of offset order (see {@code KeyOrderedDispatcher}). The stored offset is the
+ * watermark below which every record is applied; records applied above it are remembered individually
+ * until the watermark passes them.
+ * <p>
+ * State is sharded by partition: the watermark, the applied offsets and the dedup window of a partition sit
+ * behind that partition's own lock, and the counters are concurrent adders, so workers only contend when they
+ * apply records of the same partition at the same moment, plus the short columnar append. Applying takes the
+ * shared side of a read-write lock and {@link #capture()} the exclusive side, so a snapshot never contains an
+ * event without its offset or the other way round.
+ */
+@Component
+public class AnalyticsState {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private final PatientEventStore patientEventStore;
+
+    private final int dedupWindowSize;
+
+    private volatile Map<TopicPartition, Long> snapshotOffsets = Map.of();
+
+    public AnalyticsState(PatientEventStore patientEventStore,
+                          @Value("${analytics.dedup.window-size:100000}") int dedupWindowSize) {
+        this.patientEventStore = patientEventStore;
+        this.dedupWindowSize = dedupWindowSize;
+    }
+
+    /**
+     * @return false if the record is already reflected in the state (replay after a restore or rebalance)
+     * or is a duplicate of a recent event
+     */
+    public boolean apply(ConsumerRecord<?, ?> record, PatientEvent event) {
+        PartitionState partition = partition(new TopicPartition(record.topic(), record.partition()));
+        UUID eventId = eventId(event);
+        snapshotLock.readLock().lock();
+        try {
+            if (!partition.claim(record.offset(), eventId)) {
+                return false;
+            }
+
+            counters.computeIfAbsent("event_type:" + event.getEventType(), k -> new LongAdder()).increment();
+            String email = event.getEmail();
+            int at = email.lastIndexOf('@');
+            if (at >= 0) {
+                counters.computeIfAbsent("email_domain:" + email.substring(at + 1).toLowerCase(),
+                        k -> new LongAdder()).increment();
+            }
+            patientEventStore.append(event, record.timestamp());
+            return true;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that every offset below {@code watermark} on the partition has been applied.
+     */
+    public void advanceWatermark(TopicPartition partition, long watermark) {
+        PartitionState state = partition(partition);
+        snapshotLock.readLock().lock();
+        try {
+            state.advance(watermark);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    public Long nextOffset(TopicPartition partition) {
+        PartitionState state = partitions.get(partition);
+        return state != null ? state.watermark() : null;
+    }
+
+    public Map<String, Long> counters() {
+        Map<String, Long> values = new HashMap<>();
+        counters.forEach((key, count) -> values.put(key, count.sum()));
+        return Map.copyOf(values);
+    }
+
+    public StateSnapshot capture() {
+        snapshotLock.writeLock().lock();
+        try {
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            Map<TopicPartition, long[]> windows = new HashMap<>();
+            Map<TopicPartition, long[]> applied = new HashMap<>();
+            partitions.forEach((partition, state) -> state.capture(partition, offsets, windows, applied));
+            return new StateSnapshot(Map.copyOf(offsets), counters(), patientEventStore.rowCount(), windows,
+                    applied);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    public void restore(StateSnapshot snapshot) {
+        snapshotLock.writeLock().lock();
+        try {
+            counters.clear();
+            snapshot.counters().forEach((key, count) -> {
+                LongAdder adder = new LongAdder();
+                adder.add(count);
+                counters.put(key, adder);
+            });
+            partitions.clear();
+            snapshot.offsets().forEach((partition, offset) -> partition(partition).advance(offset));
+            snapshot.appliedAboveWatermark().forEach((partition, applied) ->
+                    partition(partition).restoreApplied(applied));
+            snapshot.dedupWindows().forEach((partition, ids) ->
+                    partition(partition).restoreDedupWindow(ids));
+            snapshotOffsets = Map.copyOf(snapshot.offsets());
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Offsets of the latest durable snapshot; only these may be committed to Kafka.
+     */
+    public Map<TopicPartition, Long> snapshotOffsets() {
+        return snapshotOffsets;
+    }
+
+    public void markSnapshotted(StateSnapshot snapshot) {
+        snapshotOffsets = snapshot.offsets();
+    }
+
+    private PartitionState partition(TopicPartition partition) {
+        return partitions.computeIfAbsent(partition, p -> new PartitionState());
+    }
+
+    private static UUID eventId(PatientEvent event) {
+        if (event.getEventId().isEmpty()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(event.getEventId());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Watermark, offsets applied above it and recent event ids of one partition.
+     */
+    private final class PartitionState {
+
+        private Long watermark;
+        private final Set<Long> appliedAboveWatermark = new HashSet<>();
+        private DedupWindow dedupWindow;
+
+        synchronized boolean claim(long offset, UUID eventId) {
+            if (watermark != null && offset < watermark) {
+                return false;
+            }
+            if (!appliedAboveWatermark.add(offset)) {
+                return false;
+            }
+            if (eventId == null) {
+                return true;
+            }
+            if (dedupWindow == null) {
+                dedupWindow = new DedupWindow(dedupWindowSize);
+            }
+            return dedupWindow.add(eventId.getMostSignificantBits(), eventId.getLeastSignificantBits());
+        }
+
+        synchronized void advance(long next) {
+            if (watermark != null && watermark >= next) {
+                return;
+            }
+            watermark = next;
+            appliedAboveWatermark.removeIf(offset -> offset < next);
+        }
+
+        synchronized Long watermark() {
+            return watermark;
+        }
+
+        synchronized void capture(TopicPartition partition, Map<TopicPartition, Long> offsets,
+                                  Map<TopicPartition, long[]> windows, Map<TopicPartition, long[]> applied) {
+            if (watermark != null) {
+                offsets.put(partition, watermark);
+            }
+            if (dedupWindow != null) {
+                windows.put(partition, dedupWindow.toArray());
+            }
+            applied.put(partition, appliedAboveWatermark.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        synchronized void restoreApplied(long[] offsets) {
+            for (long offset : offsets) {
+                appliedAboveWatermark.add(offset);
+            }
+        }
+
+        synchronized void restoreDedupWindow(long[] ids) {
+            dedupWindow = DedupWindow.fromArray(dedupWindowSize, ids);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.natanxds.analyticsservice.state;
+
+/**
+ * Remembers the last {@code capacity} 128-bit event ids of one partition. Ids live in primitive
+ * open-addressing arrays (linear probing, backward-shift deletion) plus a ring buffer recording insertion
+ * order, so the oldest id is evicted in O(1) and no objects are allocated per event.
+ */
+final class DedupWindow {
+
+    private final int capacity;
+    private final long[] ringHigh;
+    private final long[] ringLow;
+    private int head;
+    private int size;
+
+    private final int mask;
+    private final long[] tableHigh;
+    private final long[] tableLow;
+    private final boolean[] used;
+
+    DedupWindow(int capacity) {
+        this.capacity = capacity;
+        this.ringHigh = new long[capacity];
+        this.ringLow = new long[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.mask = tableSize - 1;
+        this.tableHigh = new long[tableSize];
+        this.tableLow = new long[tableSize];
+        this.used = new boolean[tableSize];
+    }
+
+    /**
+     * @return false if the id is already in the window
+     */
+    boolean add(long high, long low) {
+        int slot = slot(high, low);
+        while (used[slot]) {
+            if (tableHigh[slot] == high && tableLow[slot] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == capacity) {
+            remove(ringHigh[head], ringLow[head]);
+            size--;
+            // Removal may have shifted entries, so probe again for a free slot
+            slot = slot(high, low);
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        used[slot] = true;
+        tableHigh[slot] = high;
+        tableLow[slot] = low;
+        ringHigh[head] = high;
+        ringLow[head] = low;
+        head = (head + 1) % capacity;
+        size++;
+        return true;
+    }
+
+    /**
+     * Ids from oldest to newest as {@code [high0, low0, high1, low1, ...]}, for snapshots.
+     */
+    long[] toArray() {
+        long[] ids = new long[size * 2];
+        int start = (head - size + capacity) % capacity;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % capacity;
+            ids[i * 2] = ringHigh[index];
+            ids[i * 2 + 1] = ringLow[index];
+        }
+        return ids;
+    }
+
+    static DedupWindow fromArray(int capacity, long[] ids) {
+        DedupWindow window = new DedupWindow(capacity);
+        for (int i = 0; i < ids.length; i += 2) {
+            window.add(ids[i], ids[i + 1]);
+        }
+        return window;
+    }
+
+    private void remove(long high, long low) {
+        int slot = slot(high, low);
+        while (used[slot] && !(tableHigh[slot] == high && tableLow[slot] == low)) {
+            slot = (slot + 1) & mask;
+        }
+        if (!used[slot]) {
+            return;
+        }
+
+        // Backward-shift: pull later entries of the probe run into the hole so lookups never stop early
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = slot(tableHigh[next], tableLow[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                tableHigh[hole] = tableHigh[next];
+                tableLow[hole] = tableLow[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+    }
+
+    private int slot(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
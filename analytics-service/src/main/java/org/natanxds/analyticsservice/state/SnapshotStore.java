@@ -0,0 +1,176 @@
+package org.natanxds.analyticsservice.state;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot file format: {@code magic, version, offsets, counters, eventRows, dedupWindows,
+ * appliedAboveWatermark, crc32c}. Strings are length-prefixed
+ * UTF-8. A snapshot is written to a temporary file, fsynced and renamed over the previous one; the
+ * previous snapshot is kept as a fallback in case the latest fails its checksum.
+ */
+@Component
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            SnapshotStore.class);
+    private static final int MAGIC = 0x414E5331;
+    private static final int VERSION = 4;
+    private static final String LATEST = "analytics.snapshot";
+    private static final String PREVIOUS = "analytics.snapshot.prev";
+
+    private final Path directory;
+
+    public SnapshotStore(@Value("${analytics.snapshot.directory}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    public void write(StateSnapshot snapshot) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(LATEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.offsets().size());
+            for (Map.Entry<TopicPartition, Long> entry : snapshot.offsets().entrySet()) {
+                writeString(out, entry.getKey().topic());
+                out.writeInt(entry.getKey().partition());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(snapshot.counters().size());
+            for (Map.Entry<String, Long> entry : snapshot.counters().entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeLong(snapshot.eventRows());
+            writeLongArrays(out, snapshot.dedupWindows());
+            writeLongArrays(out, snapshot.appliedAboveWatermark());
+            out.flush();
+            // The checksum itself is written past the CheckedOutputStream
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).flip());
+            channel.force(true);
+        }
+
+        Path latest = directory.resolve(LATEST);
+        if (Files.exists(latest)) {
+            Files.move(latest, directory.resolve(PREVIOUS), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(temp, latest, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Optional<StateSnapshot> read() {
+        for (String name : new String[]{LATEST, PREVIOUS}) {
+            Path path = directory.resolve(name);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try {
+                return Optional.of(read(path));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable analytics snapshot {}: {}", path, e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static StateSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bodyLength = buffer.capacity() - Long.BYTES;
+            if (bodyLength < 0) {
+                throw new IOException("Truncated snapshot");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, bodyLength));
+            if (crc.getValue() != buffer.getLong(bodyLength)) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            ByteBuffer body = buffer.slice(0, bodyLength);
+            if (body.getInt() != MAGIC || body.getInt() != VERSION) {
+                throw new IOException("Not an analytics snapshot");
+            }
+            try {
+                int offsetCount = body.getInt();
+                Map<TopicPartition, Long> offsets = new HashMap<>(offsetCount * 2);
+                for (int i = 0; i < offsetCount; i++) {
+                    offsets.put(new TopicPartition(readString(body), body.getInt()), body.getLong());
+                }
+                int counterCount = body.getInt();
+                Map<String, Long> counters = new HashMap<>(counterCount * 2);
+                for (int i = 0; i < counterCount; i++) {
+                    counters.put(readString(body), body.getLong());
+                }
+                long eventRows = body.getLong();
+                Map<TopicPartition, long[]> dedupWindows = readLongArrays(body);
+                Map<TopicPartition, long[]> appliedAboveWatermark = readLongArrays(body);
+                return new StateSnapshot(offsets, counters, eventRows, dedupWindows, appliedAboveWatermark);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated snapshot", e);
+            }
+        }
+    }
+
+    private static void writeLongArrays(DataOutputStream out, Map<TopicPartition, long[]> arrays) throws IOException {
+        out.writeInt(arrays.size());
+        for (Map.Entry<TopicPartition, long[]> entry : arrays.entrySet()) {
+            writeString(out, entry.getKey().topic());
+            out.writeInt(entry.getKey().partition());
+            out.writeInt(entry.getValue().length);
+            for (long value : entry.getValue()) {
+                out.writeLong(value);
+            }
+        }
+    }
+
+    private static Map<TopicPartition, long[]> readLongArrays(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        Map<TopicPartition, long[]> arrays = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            TopicPartition partition = new TopicPartition(readString(buffer), buffer.getInt());
+            long[] values = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Long.BYTES);
+            arrays.put(partition, values);
+        }
+        return arrays;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,20 @@
+package org.natanxds.analyticsservice.state;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Map;
+
+/**
+ * Analytics state together with the next offset to consume per partition , the
+ * number of rows in the columnar event store and the recent event ids per partition, captured at the
+ * same instant. Offsets are watermarks; records applied out of order above them are listed separately.
+ */
+public record StateSnapshot(
+        Map<TopicPartition, Long> offsets,
+        Map<String, Long> counters,
+        long eventRows,
+        Map<TopicPartition, long[]> dedupWindows,
+        Map<TopicPartition, long[]> appliedAboveWatermark
+) {
+
+}
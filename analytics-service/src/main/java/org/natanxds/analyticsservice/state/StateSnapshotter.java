@@ -0,0 +1,74 @@
+package org.natanxds.analyticsservice.state;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.natanxds.analyticsservice.columnar.PatientEventStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class StateSnapshotter {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            StateSnapshotter.class);
+    private final AnalyticsState analyticsState;
+    private final SnapshotStore snapshotStore;
+    private final PatientEventStore patientEventStore;
+
+    public StateSnapshotter(AnalyticsState analyticsState, SnapshotStore snapshotStore,
+                            PatientEventStore patientEventStore) {
+        this.analyticsState = analyticsState;
+        this.snapshotStore = snapshotStore;
+        this.patientEventStore = patientEventStore;
+    }
+
+    // Runs before the listener containers start, so partitions are assigned against the restored offsets
+    @PostConstruct
+    public void restore() throws IOException {
+        long start = System.nanoTime();
+        StateSnapshot snapshot = snapshotStore.read().orElse(null);
+        if (snapshot == null) {
+            log.info("No analytics snapshot found, replaying the patient topic from the beginning");
+            patientEventStore.clear();
+            return;
+        }
+
+        try {
+            patientEventStore.load(snapshot.eventRows());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Columnar event store does not match the snapshot, replaying from the beginning: {}",
+                    e.getMessage());
+            patientEventStore.clear();
+            return;
+        }
+        analyticsState.restore(snapshot);
+        log.info("Restored analytics snapshot with {} counters, {} events and {} partition offsets in {} ms",
+                snapshot.counters().size(), snapshot.eventRows(), snapshot.offsets().size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.snapshot.interval-ms:60000}")
+    public void snapshot() {
+        long start = System.nanoTime();
+        StateSnapshot snapshot = analyticsState.capture();
+        try {
+            // Rows must be durable before a snapshot that counts them
+            patientEventStore.persist();
+            snapshotStore.write(snapshot);
+            analyticsState.markSnapshotted(snapshot);
+            log.info("Wrote analytics snapshot with {} counters in {} ms",
+                    snapshot.counters().size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Could not write analytics snapshot: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+}
@@ -0,0 +1,62 @@
+package org.natanxds.analyticsservice.benchmark;
+
+import org.natanxds.analyticsservice.columnar.ColumnarQueryEngine;
+import org.natanxds.analyticsservice.columnar.PatientEventStore;
+import org.natanxds.analyticsservice.columnar.RegistrationQuery;
+import patient.events.PatientEvent;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads synthetic registrations into the columnar store and reports query latency per query shape.
+ * 50M events need roughly 1 GB of heap: run with -Xmx2g.
+ * Usage: ColumnarQueryBenchmark [events] [runsPerQuery]
+ * Results: not measured yet. Per-query latencies at 50M events are still outstanding.
+ */
+public class ColumnarQueryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        PatientEventStore store = new PatientEventStore(Files.createTempDirectory("columnar").toString());
+        Random random = new Random(42);
+        PatientEvent.Builder builder = PatientEvent.newBuilder().setEventType("PATIENT_CREATED");
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            store.append(builder
+                    .setAddress("Main St, Region " + random.nextInt(500))
+                    .setDateOfBirth(LocalDate.ofEpochDay(-20_000 + random.nextInt(25_000)).toString())
+                    .setRegisteredDate(LocalDate.ofEpochDay(19_000 + i / 50_000).toString())
+                    .build(), 0);
+        }
+        System.out.printf("loaded %d events in %.1f s%n", events, (System.nanoTime() - start) / 1e9);
+
+        ColumnarQueryEngine engine = new ColumnarQueryEngine(store);
+        List<RegistrationQuery> queries = List.of(
+                new RegistrationQuery(RegistrationQuery.GroupBy.BIRTH_YEAR, null, null, null, null, null),
+                new RegistrationQuery(RegistrationQuery.GroupBy.REGION, null, null, null, 1970, 1990),
+                new RegistrationQuery(RegistrationQuery.GroupBy.DAY, "Region 42", null, null, null, null),
+                new RegistrationQuery(RegistrationQuery.GroupBy.DAY, null,
+                        LocalDate.ofEpochDay(19_100), LocalDate.ofEpochDay(19_200), null, null));
+
+        for (RegistrationQuery query : queries) {
+            double[] latencies = new double[runs];
+            int groups = 0;
+            for (int run = -3; run < runs; run++) {
+                long queryStart = System.nanoTime();
+                groups = engine.registrations(query).size();
+                if (run >= 0) {
+                    latencies[run] = (System.nanoTime() - queryStart) / 1_000_000.0;
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%s groups=%d p50=%.1f ms p95=%.1f ms%n", query, groups,
+                    latencies[runs / 2], latencies[(int) (runs * 0.95)]);
+        }
+    }
+}
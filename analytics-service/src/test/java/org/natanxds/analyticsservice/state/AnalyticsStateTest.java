@@ -0,0 +1,118 @@
+package org.natanxds.analyticsservice.state;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.natanxds.analyticsservice.columnar.PatientEventStore;
+import patient.events.PatientEvent;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalyticsStateTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("patient", 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsARetriedEventPublishedAtAnotherOffset() {
+        AnalyticsState state = state();
+        PatientEvent event = event(new UUID(1, 1));
+
+        assertTrue(state.apply(record(0), event));
+        assertFalse(state.apply(record(1), event));
+        assertEquals(1L, state.counters().get("event_type:PATIENT_CREATED"));
+    }
+
+    @Test
+    void appliesEachOffsetOnceAroundTheWatermark() {
+        AnalyticsState state = state();
+        assertTrue(state.apply(record(2), event(new UUID(2, 2))));
+        assertTrue(state.apply(record(0), event(new UUID(2, 0))));
+        state.advanceWatermark(PARTITION, 1);
+
+        assertFalse(state.apply(record(0), event(new UUID(2, 0))));
+        assertFalse(state.apply(record(2), event(new UUID(2, 2))));
+        assertTrue(state.apply(record(1), event(new UUID(2, 1))));
+        assertEquals(3L, state.counters().get("event_type:PATIENT_CREATED"));
+    }
+
+    @Test
+    void restoredStateKeepsWatermarkAppliedOffsetsAndDedupWindow() {
+        AnalyticsState state = state();
+        for (int offset = 0; offset < 3; offset++) {
+            state.apply(record(offset), event(new UUID(3, offset)));
+        }
+        state.advanceWatermark(PARTITION, 2);
+        StateSnapshot snapshot = state.capture();
+
+        AnalyticsState restored = state();
+        restored.restore(snapshot);
+
+        assertEquals(2L, restored.nextOffset(PARTITION));
+        assertEquals(state.counters(), restored.counters());
+        assertFalse(restored.apply(record(1), event(new UUID(3, 1))));
+        assertFalse(restored.apply(record(2), event(new UUID(3, 2))));
+        assertFalse(restored.apply(record(3), event(new UUID(3, 0))));
+        assertTrue(restored.apply(record(4), event(new UUID(3, 4))));
+        assertEquals(4L, restored.counters().get("event_type:PATIENT_CREATED"));
+    }
+
+    @Test
+    void concurrentPartitionsKeepTheirOwnWatermarksAndCountEveryEvent() throws InterruptedException {
+        AnalyticsState state = state();
+        List<Thread> threads = new ArrayList<>();
+        for (int partition = 0; partition < 4; partition++) {
+            int p = partition;
+            Thread thread = new Thread(() -> {
+                for (int offset = 0; offset < 1000; offset++) {
+                    state.apply(new ConsumerRecord<>("patient", p, offset, null, new byte[0]),
+                            event(new UUID(p, offset)));
+                    state.advanceWatermark(new TopicPartition("patient", p), offset + 1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000L, state.counters().get("event_type:PATIENT_CREATED"));
+        StateSnapshot snapshot = state.capture();
+        assertEquals(4000L, snapshot.eventRows());
+        for (int partition = 0; partition < 4; partition++) {
+            assertEquals(1000L, snapshot.offsets().get(new TopicPartition("patient", partition)));
+        }
+    }
+
+    private AnalyticsState state() {
+        return new AnalyticsState(new PatientEventStore(directory.toString()), 100);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset) {
+        return new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, null, new byte[0]);
+    }
+
+    private static PatientEvent event(UUID eventId) {
+        return PatientEvent.newBuilder()
+                .setEventId(eventId.toString())
+                .setPatientId(UUID.randomUUID().toString())
+                .setName("Jane Doe")
+                .setEmail("jane@example.com")
+                .setEventType("PATIENT_CREATED")
+                .setAddress("1 Main St, Springfield")
+                .setDateOfBirth("1990-01-01")
+                .setRegisteredDate("2024-01-01")
+                .build();
+    }
+}
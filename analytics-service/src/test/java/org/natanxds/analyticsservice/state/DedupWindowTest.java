@@ -0,0 +1,78 @@
+package org.natanxds.analyticsservice.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupWindowTest {
+
+    @Test
+    void rejectsIdsStillInTheWindow() {
+        DedupWindow window = new DedupWindow(3);
+        assertTrue(window.add(1, 1));
+        assertTrue(window.add(1, 2));
+        assertFalse(window.add(1, 1));
+        assertFalse(window.add(1, 2));
+    }
+
+    @Test
+    void evictsTheOldestIdWhenFull() {
+        DedupWindow window = new DedupWindow(3);
+        window.add(0, 1);
+        window.add(0, 2);
+        window.add(0, 3);
+        assertTrue(window.add(0, 4));
+
+        assertArrayEquals(new long[]{0, 2, 0, 3, 0, 4}, window.toArray());
+        assertFalse(window.add(0, 2));
+        assertTrue(window.add(0, 1));
+    }
+
+    @Test
+    void matchesAReferenceWindowUnderChurn() {
+        // Few distinct ids, so probe runs collide and evictions shift entries all the time
+        int capacity = 64;
+        DedupWindow window = new DedupWindow(capacity);
+        Deque<Long> order = new ArrayDeque<>();
+        Set<Long> reference = new HashSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            long id = random.nextInt(256);
+            boolean expected = !reference.contains(id);
+            if (expected) {
+                if (order.size() == capacity) {
+                    reference.remove(order.removeFirst());
+                }
+                order.addLast(id);
+                reference.add(id);
+            }
+            assertEquals(expected, window.add(id >>> 4, id), "add #" + i);
+        }
+    }
+
+    @Test
+    void restoresFromItsSnapshot() {
+        DedupWindow window = new DedupWindow(4);
+        for (long id = 1; id <= 6; id++) {
+            window.add(id, -id);
+        }
+        DedupWindow restored = DedupWindow.fromArray(4, window.toArray());
+
+        assertArrayEquals(window.toArray(), restored.toArray());
+        assertFalse(restored.add(6, -6));
+        assertFalse(restored.add(3, -3));
+        // The restored ring keeps the original order, so 3 is the first id to go
+        assertTrue(restored.add(2, -2));
+        assertTrue(restored.add(3, -3));
+        assertFalse(restored.add(5, -5));
+    }
+}
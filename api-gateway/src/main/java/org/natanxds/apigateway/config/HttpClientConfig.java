@@ -0,0 +1,16 @@
+package org.natanxds.apigateway.config;
+
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpProtocol;
+
+@Configuration
+public class HttpClientConfig {
+
+    // Prefer cleartext HTTP/2 to the backends, falling back to HTTP/1.1 when the upgrade is refused
+    @Bean
+    public HttpClientCustomizer h2cHttpClientCustomizer() {
+        return httpClient -> httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+    }
+}
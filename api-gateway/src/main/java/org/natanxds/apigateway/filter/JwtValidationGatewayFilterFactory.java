@@ -5,8 +5,14 @@ import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Component
 public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
@@ -14,10 +20,29 @@ public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFact
     private final WebClient webClient;
 
     public JwtValidationGatewayFilterFactory(WebClient.Builder webClientBuilder,
-                                             @Value("${auth.service.url}") String authServiceUrl) {
-        this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+                                             @Value("${auth.service.url}") String authServiceUrl,
+                                             @Value("${auth.service.client.max-connections:200}") int maxConnections,
+                                             @Value("${auth.service.client.pending-acquire-max-count:400}") int pendingAcquireMaxCount,
+                                             @Value("${auth.service.client.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+                                             @Value("${auth.service.client.max-idle-time:30s}") Duration maxIdleTime,
+                                             @Value("${auth.service.client.response-timeout:2s}") Duration responseTimeout) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("auth-service-validation")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true)
+                .build();
 
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(HttpProtocol.H2C, HttpProtocol.HTTP11)
+                .responseTimeout(responseTimeout);
 
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(authServiceUrl)
+                .build();
     }
 
     @Override
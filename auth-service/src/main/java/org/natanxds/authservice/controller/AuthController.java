@@ -5,10 +5,12 @@ import lombok.AllArgsConstructor;
 import org.natanxds.authservice.dto.LoginRequestDTO;
 import org.natanxds.authservice.dto.LoginResonseDTO;
 import org.natanxds.authservice.service.AuthService;
+import org.natanxds.authservice.util.JwtUtil;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -16,9 +18,11 @@ import java.util.Optional;
 public class AuthController {
 
     private final AuthService authService;
+    private final JwtUtil jwtUtil;
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, JwtUtil jwtUtil) {
         this.authService = authService;
+        this.jwtUtil = jwtUtil;
     }
 
     @Operation(summary = "Generate token on user login")
@@ -50,4 +54,10 @@ public class AuthController {
                 ? ResponseEntity.ok().build()
                 : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
+
+    @Operation(summary = "Public keys for verifying tokens locally")
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok(jwtUtil.jwks());
+    }
 }
\ No newline at end of file
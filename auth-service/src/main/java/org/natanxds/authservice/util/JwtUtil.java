@@ -1,45 +1,131 @@
 package org.natanxds.authservice.util;
 
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Issues and verifies tokens with either the shared HMAC secret or an asymmetric key pair (EdDSA over
+ * Ed25519, or ES256). In asymmetric mode validators only need the public key, published by
+ * {@link #jwks()}. The parser is immutable and thread-safe, so it is built once and shared.
+ */
 @Component
 public class JwtUtil {
 
-    private final Key secretKey;
+    private static final Logger log = LoggerFactory.getLogger(
+            JwtUtil.class);
+    private static final long TOKEN_TTL_MS = 1000L * 60 * 60 * 10; // 10 hours
 
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
-        byte[] keyBytes = Base64.getDecoder()
-                .decode(secret.getBytes(StandardCharsets.UTF_8));
-        this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+    private final SigningAlgorithm algorithm;
+    private final SecretKey secretKey;
+    private final PrivateKey privateKey;
+    private final PublicJwk<?> publicJwk;
+    private final JwtParser parser;
+
+    public JwtUtil(@Value("${jwt.secret:}") String secret,
+                   @Value("${jwt.signing-algorithm:HMAC}") SigningAlgorithm algorithm,
+                   @Value("${jwt.private-key:}") String privateKey,
+                   @Value("${jwt.public-key:}") String publicKey) {
+        this.algorithm = algorithm;
+        if (algorithm == SigningAlgorithm.HMAC) {
+            if (secret.isEmpty()) {
+                throw new IllegalStateException("jwt.secret is required for HMAC signing");
+            }
+            byte[] keyBytes = Base64.getDecoder()
+                    .decode(secret.getBytes(StandardCharsets.UTF_8));
+            this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+            this.privateKey = null;
+            this.publicJwk = null;
+            this.parser = Jwts.parser().verifyWith(secretKey).build();
+        } else {
+            KeyPair keyPair = keyPair(algorithm, privateKey, publicKey);
+            this.secretKey = null;
+            this.privateKey = keyPair.getPrivate();
+            this.publicJwk = Jwks.builder().key(keyPair.getPublic()).idFromThumbprint().build();
+            this.parser = Jwts.parser().verifyWith(keyPair.getPublic()).build();
+        }
     }
 
     public String generateToken(String email, String role) {
-        return Jwts.builder()
+        long now = System.currentTimeMillis();
+        JwtBuilder builder = Jwts.builder()
                 .subject(email)
                 .claim("role", role)
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 *10)) // 10 hours
-                .signWith(secretKey)
-                .compact();
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + TOKEN_TTL_MS));
+        return switch (algorithm) {
+            case HMAC -> builder.signWith(secretKey).compact();
+            case EdDSA -> builder.header().keyId(publicJwk.getId()).and()
+                    .signWith(privateKey, Jwts.SIG.EdDSA).compact();
+            case ES256 -> builder.header().keyId(publicJwk.getId()).and()
+                    .signWith(privateKey, Jwts.SIG.ES256).compact();
+        };
     }
 
     public void validateToken(String token) {
         try {
-            Jwts.parser().verifyWith((SecretKey) secretKey)
-                    .build()
-                    .parseSignedClaims(token);
+            parser.parseSignedClaims(token);
         } catch (JwtException e) {
             throw new JwtException("Invalid JWT");
         }
     }
+
+    /**
+     * The public verification key as a JWK Set; empty in HMAC mode, where the key is a shared secret.
+     */
+    public Map<String, Object> jwks() {
+        return Map.of("keys", publicJwk == null ? List.of() : List.of(publicJwk));
+    }
+
+    private static KeyPair keyPair(SigningAlgorithm algorithm, String privateKey, String publicKey) {
+        try {
+            String keyAlgorithm = algorithm == SigningAlgorithm.EdDSA ? "Ed25519" : "EC";
+            if (privateKey.isEmpty() || publicKey.isEmpty()) {
+                // Tokens signed with a generated key stop validating on restart, so this suits local runs only
+                log.warn("No jwt.private-key/jwt.public-key configured, generating an ephemeral {} key pair",
+                        algorithm);
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+                if (algorithm == SigningAlgorithm.ES256) {
+                    generator.initialize(new ECGenParameterSpec("secp256r1"));
+                }
+                return generator.generateKeyPair();
+            }
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+            return new KeyPair(
+                    keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKey))),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey))));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid " + algorithm + " signing key", e);
+        }
+    }
+
+    public enum SigningAlgorithm {
+        HMAC,
+        EdDSA,
+        ES256
+    }
 }
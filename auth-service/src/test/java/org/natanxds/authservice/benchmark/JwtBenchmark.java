@@ -0,0 +1,54 @@
+package org.natanxds.authservice.benchmark;
+
+import org.natanxds.authservice.util.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token signing and verification throughput per algorithm, with the shared parser {@link JwtUtil} uses.
+ * {@code verify} is the per-request cost when the gateway validates through auth-service.
+ * Results: not measured yet. Sign and verify ops/s per algorithm, before and after the shared parser, are
+ * still outstanding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "hRE11I9k6NXaZy9lD8ClH/7O66KO92QwhGs8jF4sgA77rqUHk4cZbyvrtlCOFawc";
+
+    @Param({"HMAC", "EdDSA", "ES256"})
+    private JwtUtil.SigningAlgorithm algorithm;
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil(SECRET, algorithm, "", "");
+        token = jwtUtil.generateToken("testuser@test.com", "ADMIN");
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken("testuser@test.com", "ADMIN");
+    }
+
+    @Benchmark
+    public void verify() {
+        jwtUtil.validateToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,6 @@
+package org.natanxds.billingservice.account;
+
+import java.util.UUID;
+
+public record BillingAccount(String accountId, UUID patientId, String status) {
+}
@@ -0,0 +1,53 @@
+package org.natanxds.billingservice.account;
+
+import org.natanxds.common.digest.IdSetDigest;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Billing accounts by patient id, at most one per patient, so creating an account again (a gRPC retry, or
+ * reconciliation racing the original request) returns the existing one. Ids are kept in the order Postgres
+ * gives patient-service (unsigned), which lets reconciliation merge the two sorted streams. Held in memory:
+ * accounts do not survive a restart, and reconciliation recreates them. The store is also per instance, so
+ * billing-service runs as a single task: a second one would hold a different set of accounts, answer digests
+ * differently and make reconciliation create duplicates. Move the accounts to a shared store with a unique
+ * patient id before scaling it out.
+ */
+@Component
+public class BillingAccountStore {
+
+    private static final Comparator<UUID> UNSIGNED_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private final ConcurrentSkipListMap<UUID, BillingAccount> accounts = new ConcurrentSkipListMap<>(UNSIGNED_ORDER);
+
+    public BillingAccount getOrCreate(UUID patientId) {
+        BillingAccount account = new BillingAccount(UUID.randomUUID().toString(), patientId, "ACTIVE");
+        BillingAccount existing = accounts.putIfAbsent(patientId, account);
+        return existing != null ? existing : account;
+    }
+
+    // True if the account was created, false if the patient already had one
+    public boolean createIfAbsent(UUID patientId) {
+        return accounts.putIfAbsent(patientId,
+                new BillingAccount(UUID.randomUUID().toString(), patientId, "ACTIVE")) == null;
+    }
+
+    // Accounts with a patient id in [lower, upper), ascending; a null upper means no upper bound
+    public NavigableMap<UUID, BillingAccount> range(UUID lower, UUID upper) {
+        return upper == null ? accounts.tailMap(lower, true) : accounts.subMap(lower, true, upper, false);
+    }
+
+    public IdSetDigest digest(UUID lower, UUID upper) {
+        IdSetDigest digest = new IdSetDigest();
+        for (UUID patientId : range(lower, upper).keySet()) {
+            digest.add(patientId);
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,126 @@
+package org.natanxds.billingservice.config;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty-level tuning of the gRPC server that grpc-spring-boot-starter does not expose as properties.
+ * Keepalive enforcement and connection age stay in {@code grpc.server.*}. Every setting defaults to the
+ * grpc-java behaviour; the {@code throughput} profile turns them on.
+ */
+@Configuration
+@Slf4j
+public class GrpcServerConfig {
+
+    private final List<EventLoopGroup> eventLoopGroups = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Bean
+    public GrpcServerConfigurer grpcServerTuning(
+            @Value("${grpc.server.tuning.executor:default}") String executorType,
+            @Value("${grpc.server.tuning.executor-threads:0}") int executorThreads,
+            @Value("${grpc.server.tuning.worker-event-loop-threads:0}") int workerThreads,
+            @Value("${grpc.server.tuning.max-concurrent-calls-per-connection:0}") int maxConcurrentCalls,
+            @Value("${grpc.server.tuning.flow-control-window:0}") int flowControlWindow) {
+        return serverBuilder -> {
+            if (!(serverBuilder instanceof NettyServerBuilder netty)) {
+                return;
+            }
+
+            switch (executorType) {
+                case "virtual" -> executor = Executors.newVirtualThreadPerTaskExecutor();
+                case "fixed" -> executor = Executors.newFixedThreadPool(
+                        executorThreads > 0 ? executorThreads : Runtime.getRuntime().availableProcessors(),
+                        new DefaultThreadFactory("grpc-billing"));
+                case "default" -> { }
+                default -> throw new IllegalArgumentException("Unknown grpc.server.tuning.executor: " + executorType);
+            }
+            if (executor != null) {
+                netty.executor(executor);
+            }
+
+            if (workerThreads > 0) {
+                // Boss group, worker group and channel type must be replaced together
+                boolean epoll = Epoll.isAvailable();
+                EventLoopGroup boss = epoll
+                        ? new EpollEventLoopGroup(1, new DefaultThreadFactory("grpc-boss"))
+                        : new NioEventLoopGroup(1, new DefaultThreadFactory("grpc-boss"));
+                EventLoopGroup workers = epoll
+                        ? new EpollEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-worker"))
+                        : new NioEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-worker"));
+                Class<? extends ServerChannel> channelType = epoll
+                        ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+                netty.bossEventLoopGroup(boss).workerEventLoopGroup(workers).channelType(channelType);
+                eventLoopGroups.add(boss);
+                eventLoopGroups.add(workers);
+            }
+            if (maxConcurrentCalls > 0) {
+                netty.maxConcurrentCallsPerConnection(maxConcurrentCalls);
+            }
+            // A fixed window turns off grpc-java's BDP-based window auto-tuning
+            if (flowControlWindow > 0) {
+                netty.flowControlWindow(flowControlWindow);
+            }
+            log.info("gRPC server tuning: executor={}, workerEventLoopThreads={}, maxConcurrentCallsPerConnection={}, "
+                    + "flowControlWindow={}", executorType, workerThreads, maxConcurrentCalls, flowControlWindow);
+        };
+    }
+
+    // Responses are gzipped only for clients that advertise gzip in grpc-accept-encoding; others get identity
+    @GrpcGlobalServerInterceptor
+    public ServerInterceptor responseCompressionInterceptor(
+            @Value("${grpc.server.tuning.response-compression:identity}") String compression) {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                if ("identity".equals(compression)) {
+                    return next.startCall(call, headers);
+                }
+                return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                    @Override
+                    public void sendHeaders(Metadata responseHeaders) {
+                        setCompression(compression);
+                        super.sendHeaders(responseHeaders);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (EventLoopGroup group : eventLoopGroups) {
+            group.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -1,28 +1,175 @@
 package org.natanxds.billingservice.grpc;
 
+import billing.AccountRange;
+import billing.AccountRangesDigest;
+import billing.AccountRangesRequest;
+import billing.BillingAccountChunk;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc.BillingServiceImplBase;
+import billing.RangeDigest;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.natanxds.billingservice.account.BillingAccount;
+import org.natanxds.billingservice.account.BillingAccountStore;
+import org.natanxds.common.digest.IdSetDigest;
+import org.natanxds.common.logging.LogRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.UUID;
 
 @GrpcService
 @Slf4j
 public class BillingGrpcService extends BillingServiceImplBase {
 
+    private static final int MAX_CHUNK_SIZE = 10_000;
+
+    private final BillingAccountStore accountStore;
+    private final LogRateLimiter requestLogLimiter;
+
+    public BillingGrpcService(BillingAccountStore accountStore,
+                              @Value("${logging.sampling.interval-ms:1000}") long logIntervalMs) {
+        this.accountStore = accountStore;
+        this.requestLogLimiter = new LogRateLimiter(Duration.ofMillis(logIntervalMs));
+    }
+
     @Override
     public void creatingBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
-        log.info("createBillingAccount request received {}", request.toString() );
+        // Rate-limited, and without name or email: formatting every request costs more than the call itself
+        long suppressed = requestLogLimiter.tryAcquire();
+        if (suppressed >= 0) {
+            log.atInfo().setMessage("createBillingAccount request received")
+                    .addKeyValue("patientId", request.getPatientId())
+                    .addKeyValue("suppressed", suppressed)
+                    .log();
+        }
 
-        // Business logic e.g save to database perform calculates etc
+        UUID patientId = parseId(request.getPatientId(), responseObserver);
+        if (patientId == null) {
+            return;
+        }
+        BillingAccount account = accountStore.getOrCreate(patientId);
 
         BillingResponse response = BillingResponse.newBuilder()
-                .setAccountId("12345")
-                .setStatus("ACTIVE")
+                .setAccountId(account.accountId())
+                .setStatus(account.status())
                 .build();
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void digestBillingAccounts(AccountRangesRequest request,
+                                      StreamObserver<AccountRangesDigest> responseObserver) {
+        AccountRangesDigest.Builder response = AccountRangesDigest.newBuilder();
+        for (AccountRange range : request.getRangesList()) {
+            Bounds bounds = parseRange(range, responseObserver);
+            if (bounds == null) {
+                return;
+            }
+            IdSetDigest digest = accountStore.digest(bounds.lower(), bounds.upper());
+            response.addDigests(RangeDigest.newBuilder().setCount(digest.count()).setHash(digest.hash()));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    // Sends chunks only while the client keeps up, instead of buffering the whole range in the transport
+    @Override
+    public void listBillingAccounts(AccountRange range, StreamObserver<BillingAccountChunk> responseObserver) {
+        Bounds bounds = parseRange(range, responseObserver);
+        if (bounds == null) {
+            return;
+        }
+        int chunkSize = range.getChunkSize() > 0 ? Math.min(range.getChunkSize(), MAX_CHUNK_SIZE) : 1000;
+        Iterator<UUID> patientIds = accountStore.range(bounds.lower(), bounds.upper()).keySet().iterator();
+
+        ServerCallStreamObserver<BillingAccountChunk> observer =
+                (ServerCallStreamObserver<BillingAccountChunk>) responseObserver;
+        observer.setOnCancelHandler(() -> log.debug("listBillingAccounts cancelled by the client"));
+        observer.setOnReadyHandler(new Runnable() {
+            private boolean completed;
+
+            @Override
+            public void run() {
+                while (!completed && observer.isReady()) {
+                    ByteBuffer chunk = ByteBuffer.allocate(chunkSize * 16);
+                    while (chunk.hasRemaining() && patientIds.hasNext()) {
+                        UUID patientId = patientIds.next();
+                        chunk.putLong(patientId.getMostSignificantBits()).putLong(patientId.getLeastSignificantBits());
+                    }
+                    if (chunk.position() > 0) {
+                        observer.onNext(BillingAccountChunk.newBuilder()
+                                .setPatientIds(ByteString.copyFrom(chunk.flip()))
+                                .build());
+                    }
+                    if (!patientIds.hasNext()) {
+                        completed = true;
+                        observer.onCompleted();
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void createBillingAccounts(BillingBatchRequest request,
+                                      StreamObserver<BillingBatchResponse> responseObserver) {
+        int created = 0;
+        for (BillingRequest account : request.getAccountsList()) {
+            UUID patientId = parseId(account.getPatientId(), responseObserver);
+            if (patientId == null) {
+                return;
+            }
+            if (accountStore.createIfAbsent(patientId)) {
+                created++;
+            }
+        }
+        int existing = request.getAccountsCount() - created;
+        log.info("createBillingAccounts: {} created, {} already existed", created, existing);
+
+        responseObserver.onNext(BillingBatchResponse.newBuilder()
+                .setCreated(created)
+                .setExisting(existing)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    // Null after failing the call with INVALID_ARGUMENT
+    private static Bounds parseRange(AccountRange range, StreamObserver<?> responseObserver) {
+        UUID lower = parseId(range.getLower(), responseObserver);
+        if (lower == null) {
+            return null;
+        }
+        if (range.getUpper().isEmpty()) {
+            return new Bounds(lower, null);
+        }
+        UUID upper = parseId(range.getUpper(), responseObserver);
+        return upper == null ? null : new Bounds(lower, upper);
+    }
+
+    // Null after failing the call with INVALID_ARGUMENT
+    private static UUID parseId(String value, StreamObserver<?> responseObserver) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Not a uuid: " + value)
+                    .asRuntimeException());
+            return null;
+        }
+    }
+
+    private record Bounds(UUID lower, UUID upper) {
+    }
 }
@@ -0,0 +1,32 @@
+package org.natanxds.billingservice.grpc;
+
+import billing.BillingServiceGrpc;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class BillingHealthStatus {
+
+    private final HealthStatusManager healthStatusManager;
+
+    public BillingHealthStatus(HealthStatusManager healthStatusManager) {
+        this.healthStatusManager = healthStatusManager;
+    }
+
+    @PostConstruct
+    public void serving() {
+        healthStatusManager.setStatus(BillingServiceGrpc.SERVICE_NAME, ServingStatus.SERVING);
+    }
+
+    // Clients health-checking BillingService stop picking this instance before the server stops
+    @PreDestroy
+    public void draining() {
+        log.info("Marking {} as NOT_SERVING", BillingServiceGrpc.SERVICE_NAME);
+        healthStatusManager.setStatus(BillingServiceGrpc.SERVICE_NAME, ServingStatus.NOT_SERVING);
+    }
+}
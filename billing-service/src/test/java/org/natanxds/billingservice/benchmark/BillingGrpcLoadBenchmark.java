@@ -0,0 +1,144 @@
+package org.natanxds.billingservice.benchmark;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop load against a running billing-service, in the spirit of ghz: {@code concurrency} calls are
+ * kept in flight over {@code connections} channels for {@code seconds} after a warm-up, then RPS and
+ * latency percentiles are reported. Latencies are bucketed per microsecond up to one second.
+ * Usage: BillingGrpcLoadBenchmark [target] [concurrency] [seconds] [connections] [gzip]
+ * Results: not measured yet. RPS and latency percentiles per server profile are still outstanding.
+ */
+public class BillingGrpcLoadBenchmark {
+
+    private static final int WARMUP_SECONDS = 5;
+    private static final int MAX_MICROS = 1_000_000;
+
+    private final AtomicLongArray histogram = new AtomicLongArray(MAX_MICROS + 1);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long measureFrom = Long.MAX_VALUE;
+    private volatile long measureUntil = Long.MAX_VALUE;
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "localhost:9001";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        boolean gzip = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+        List<ManagedChannel> channels = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            channels.add(ManagedChannelBuilder.forTarget(target).usePlaintext().build());
+        }
+
+        BillingGrpcLoadBenchmark benchmark = new BillingGrpcLoadBenchmark();
+        CountDownLatch stopped = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        benchmark.measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        benchmark.measureUntil = benchmark.measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        for (int i = 0; i < concurrency; i++) {
+            BillingServiceGrpc.BillingServiceStub stub = BillingServiceGrpc.newStub(channels.get(i % connections));
+            benchmark.new Caller(gzip ? stub.withCompression("gzip") : stub, i, stopped).next();
+        }
+
+        stopped.await();
+        for (ManagedChannel channel : channels) {
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        benchmark.report(seconds, concurrency, connections, gzip);
+    }
+
+    private void report(int seconds, int concurrency, int connections, boolean gzip) {
+        long calls = 0;
+        for (int i = 0; i <= MAX_MICROS; i++) {
+            calls += histogram.get(i);
+        }
+        System.out.printf("concurrency=%d connections=%d gzip=%s calls=%d errors=%d rps=%.0f%n",
+                concurrency, connections, gzip, calls, errors.get(), calls / (double) seconds);
+        System.out.printf("p50=%.3f ms p90=%.3f ms p99=%.3f ms p99.9=%.3f ms max=%.3f ms%n",
+                percentile(calls, 0.50), percentile(calls, 0.90), percentile(calls, 0.99),
+                percentile(calls, 0.999), maxNanos.get() / 1_000_000.0);
+    }
+
+    private double percentile(long calls, double quantile) {
+        long rank = (long) Math.ceil(calls * quantile);
+        long seen = 0;
+        for (int i = 0; i <= MAX_MICROS; i++) {
+            seen += histogram.get(i);
+            if (seen >= rank && seen > 0) {
+                return i / 1000.0;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private void record(long startNanos, long endNanos, boolean ok) {
+        if (startNanos < measureFrom || endNanos > measureUntil) {
+            return;
+        }
+        if (!ok) {
+            errors.incrementAndGet();
+            return;
+        }
+        long nanos = endNanos - startNanos;
+        histogram.incrementAndGet((int) Math.min(MAX_MICROS, nanos / 1000));
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // One outstanding call at a time; the next is issued from the completion callback
+    private final class Caller implements StreamObserver<BillingResponse> {
+
+        private final BillingServiceGrpc.BillingServiceStub stub;
+        private final BillingRequest request;
+        private final CountDownLatch stopped;
+        private long startNanos;
+
+        private Caller(BillingServiceGrpc.BillingServiceStub stub, int id, CountDownLatch stopped) {
+            this.stub = stub;
+            this.request = BillingRequest.newBuilder()
+                    .setPatientId("00000000-0000-0000-0000-" + String.format("%012d", id))
+                    .setName("Load Test " + id)
+                    .setEmail("load" + id + "@example.com")
+                    .build();
+            this.stopped = stopped;
+        }
+
+        private void next() {
+            startNanos = System.nanoTime();
+            if (startNanos >= measureUntil) {
+                stopped.countDown();
+                return;
+            }
+            stub.creatingBillingAccount(request, this);
+        }
+
+        @Override
+        public void onNext(BillingResponse response) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            record(startNanos, System.nanoTime(), false);
+            next();
+        }
+
+        @Override
+        public void onCompleted() {
+            record(startNanos, System.nanoTime(), true);
+            next();
+        }
+    }
+}
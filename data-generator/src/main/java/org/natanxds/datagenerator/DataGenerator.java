@@ -0,0 +1,42 @@
+package org.natanxds.datagenerator;
+
+import java.time.format.DateTimeParseException;
+
+/**
+ * Generates a reproducible synthetic patient population for performance tests: loads it into the
+ * patient-service and auth-service databases and, optionally, publishes the matching PatientCreated events.
+ * See {@link GeneratorOptions#USAGE} for the options.
+ */
+public final class DataGenerator {
+
+    private DataGenerator() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.print(GeneratorOptions.USAGE);
+            return;
+        }
+
+        GeneratorOptions options;
+        try {
+            options = GeneratorOptions.parse(args);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        PatientGenerator generator = new PatientGenerator(options.seed(), options.asOf());
+        try {
+            new PostgresLoader(options, generator).load();
+            if (!options.kafkaBootstrap().isEmpty()) {
+                new KafkaEventLoader(options, generator).load();
+            }
+        } catch (Exception e) {
+            System.err.println("Data generation failed: " + e);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
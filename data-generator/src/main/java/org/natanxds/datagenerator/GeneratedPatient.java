@@ -0,0 +1,12 @@
+package org.natanxds.datagenerator;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * One patient, the auth-service user with the same email, and the id of the PatientCreated event for it.
+ * Every field is a function of the seed and the patient's index only.
+ */
+record GeneratedPatient(UUID id, String name, String email, String address, LocalDate dateOfBirth,
+                        LocalDate registeredDate, UUID userId, UUID eventId) {
+}
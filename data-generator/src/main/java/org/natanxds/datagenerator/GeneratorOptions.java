@@ -0,0 +1,94 @@
+package org.natanxds.datagenerator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line options, as {@code --name=value}. Database and Kafka defaults point at the ports
+ * docker-compose.yaml publishes; an empty value turns that target off.
+ */
+record GeneratorOptions(long patients,
+                        long seed,
+                        LocalDate asOf,
+                        int parallelism,
+                        int batchSize,
+                        List<String> patientDbs,
+                        String emailIndexDb,
+                        String authDb,
+                        String dbUser,
+                        String dbPassword,
+                        int virtualNodes,
+                        boolean truncate,
+                        String kafkaBootstrap,
+                        String kafkaTopic,
+                        long kafkaRate) {
+
+    static final String USAGE = """
+            Usage: DataGenerator [--name=value ...]
+              --patients=1000000          patients to generate
+              --seed=42                   same seed and patients, same dataset
+              --as-of=2025-01-01          ages and registration dates count back from this day
+              --parallelism=<cpus>        COPY streams loading in parallel
+              --batch-size=100000         patients per COPY statement
+              --patient-db=jdbc:postgresql://localhost:5000/db
+                                          comma-separated shards, in patient.sharding.shards order
+              --email-index-db=           patient.sharding.email-index, when sharded
+              --auth-db=jdbc:postgresql://localhost:5001/db
+              --db-user=admin_user --db-password=password
+              --virtual-nodes=128         patient.sharding.virtual-nodes
+              --truncate                  empty the patient tables and remove generated users
+                                          first; required to re-run after a failed load
+              --kafka-bootstrap=          e.g. localhost:9094 to also publish PatientCreated events
+              --kafka-topic=patient
+              --kafka-rate=0              events per second, 0 for as fast as possible
+            """;
+
+    static GeneratorOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg + "\n" + USAGE);
+            }
+            int separator = arg.indexOf('=');
+            values.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator),
+                    separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+
+        GeneratorOptions options = new GeneratorOptions(
+                Long.parseLong(take(values, "patients", "1000000")),
+                Long.parseLong(take(values, "seed", "42")),
+                LocalDate.parse(take(values, "as-of", "2025-01-01")),
+                Integer.parseInt(take(values, "parallelism",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(take(values, "batch-size", "100000")),
+                Arrays.stream(take(values, "patient-db", "jdbc:postgresql://localhost:5000/db").split(","))
+                        .map(String::strip)
+                        .filter(url -> !url.isEmpty())
+                        .toList(),
+                take(values, "email-index-db", ""),
+                take(values, "auth-db", "jdbc:postgresql://localhost:5001/db"),
+                take(values, "db-user", "admin_user"),
+                take(values, "db-password", "password"),
+                Integer.parseInt(take(values, "virtual-nodes", "128")),
+                Boolean.parseBoolean(take(values, "truncate", "false")),
+                take(values, "kafka-bootstrap", ""),
+                take(values, "kafka-topic", "patient"),
+                Long.parseLong(take(values, "kafka-rate", "0")));
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet() + "\n" + USAGE);
+        }
+        if (options.patientDbs().size() > 1 && options.emailIndexDb().isEmpty()) {
+            throw new IllegalArgumentException("Sharded patient databases need --email-index-db");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,113 @@
+package org.natanxds.datagenerator;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import patient.events.PatientEvent;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes a PatientCreated event for every generated patient, built and keyed like patient-service's
+ * KafkaProducer does, so analytics-service and other consumers see the same stream a real load would produce.
+ * The event ids are generated too, so re-running with the same seed resends the same event ids rather than
+ * new events. {@code kafka-rate} caps the events per second; 0 sends as fast as the
+ * producer can batch them.
+ */
+final class KafkaEventLoader {
+
+    private static final String EVENT_TYPE = "PATIENT_CREATED";
+    private static final int PACING_INTERVAL = 1000;
+
+    private final GeneratorOptions options;
+    private final PatientGenerator generator;
+
+    KafkaEventLoader(GeneratorOptions options, PatientGenerator generator) {
+        this.options = options;
+        this.generator = generator;
+    }
+
+    void load() throws InterruptedException {
+        AtomicReference<Exception> firstFailure = new AtomicReference<>();
+        long start = System.nanoTime();
+        long lastReport = start;
+
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(producerConfig())) {
+            for (long index = 0; index < options.patients(); index++) {
+                GeneratedPatient patient = generator.patient(index);
+                producer.send(new ProducerRecord<>(options.kafkaTopic(), patient.id().toString(),
+                                patientEvent(patient).toByteArray()),
+                        (metadata, exception) -> {
+                            if (exception != null) {
+                                firstFailure.compareAndSet(null, exception);
+                            }
+                        });
+
+                if ((index + 1) % PACING_INTERVAL == 0) {
+                    if (firstFailure.get() != null) {
+                        break;
+                    }
+                    pace(start, index + 1);
+                    long now = System.nanoTime();
+                    if (now - lastReport >= TimeUnit.SECONDS.toNanos(5)) {
+                        report(start, index + 1);
+                        lastReport = now;
+                    }
+                }
+            }
+            producer.flush();
+        }
+
+        if (firstFailure.get() != null) {
+            throw new IllegalStateException("Publishing PatientCreated events failed", firstFailure.get());
+        }
+        report(start, options.patients());
+    }
+
+    // Sleeps until the events sent so far are due at the target rate
+    private void pace(long start, long sent) throws InterruptedException {
+        if (options.kafkaRate() <= 0) {
+            return;
+        }
+        long dueNanos = start + sent * TimeUnit.SECONDS.toNanos(1) / options.kafkaRate();
+        long aheadNanos = dueNanos - System.nanoTime();
+        if (aheadNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        }
+    }
+
+    private Map<String, Object> producerConfig() {
+        return Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, options.kafkaBootstrap(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.LINGER_MS_CONFIG, 20,
+                ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+    }
+
+    private static PatientEvent patientEvent(GeneratedPatient patient) {
+        return PatientEvent.newBuilder()
+                .setEventId(patient.eventId().toString())
+                .setPatientId(patient.id().toString())
+                .setName(patient.name())
+                .setEmail(patient.email())
+                .setEventType(EVENT_TYPE)
+                .setAddress(patient.address())
+                .setDateOfBirth(patient.dateOfBirth().toString())
+                .setRegisteredDate(patient.registeredDate().toString())
+                .build();
+    }
+
+    private void report(long start, long sent) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Kafka: %,d of %,d events in %.0f s (%,.0f events/s)%n",
+                sent, options.patients(), seconds, sent / Math.max(seconds, 1e-9));
+    }
+}
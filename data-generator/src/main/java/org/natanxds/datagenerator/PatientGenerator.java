@@ -0,0 +1,96 @@
+package org.natanxds.datagenerator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic synthetic patients: patient {@code i} depends only on the seed and {@code i}, so any range of
+ * indexes can be generated on any thread, and the database rows and Kafka events of one seed always match.
+ * <ul>
+ *   <li>Names, streets and cities follow Zipf-weighted frequency-ranked lists (see the resources).</li>
+ *   <li>Emails combine the name in one of a few common patterns with a common provider; a base-36 suffix of
+ *       the index keeps them unique, as patient-service and auth-service require.</li>
+ *   <li>Ages follow a population pyramid, registration dates fall off exponentially into the past (mean two
+ *       years, at most ten, never before birth). Both count back from {@code asOf}, not from today.</li>
+ * </ul>
+ * Generated values contain no tab, newline or backslash, so they need no escaping in COPY text format.
+ */
+final class PatientGenerator {
+
+    private static final WeightedChoice FIRST_NAMES = WeightedChoice.zipf("first-names.txt", 0.8);
+    private static final WeightedChoice LAST_NAMES = WeightedChoice.zipf("last-names.txt", 0.9);
+    private static final WeightedChoice STREET_NAMES = WeightedChoice.zipf("street-names.txt", 0.7);
+    private static final WeightedChoice CITIES = WeightedChoice.zipf("cities.txt", 1.0);
+    private static final WeightedChoice STREET_SUFFIXES = new WeightedChoice(
+            List.of("St", "Ave", "Rd", "Dr", "Ln", "Blvd", "Ct", "Way", "Pl"),
+            new double[]{30, 20, 12, 12, 8, 5, 5, 5, 3});
+    private static final WeightedChoice EMAIL_DOMAINS = new WeightedChoice(
+            List.of("gmail.com", "yahoo.com", "outlook.com", "hotmail.com", "icloud.com", "aol.com",
+                    "protonmail.com", "example.com"),
+            new double[]{45, 14, 12, 9, 8, 4, 2, 6});
+    // Share of the population per age band, youngest first
+    private static final int[][] AGE_BANDS = {{0, 18}, {18, 35}, {35, 50}, {50, 65}, {65, 80}, {80, 100}};
+    private static final WeightedChoice AGE_BAND = new WeightedChoice(
+            List.of("0-17", "18-34", "35-49", "50-64", "65-79", "80-99"), new double[]{22, 23, 19, 19, 13, 4});
+    private static final double MEAN_REGISTRATION_AGE_DAYS = 2 * 365.25;
+    private static final long MAX_REGISTRATION_AGE_DAYS = 10 * 365;
+
+    private final long seed;
+    private final LocalDate asOf;
+
+    PatientGenerator(long seed, LocalDate asOf) {
+        this.seed = seed;
+        this.asOf = asOf;
+    }
+
+    GeneratedPatient patient(long index) {
+        SplittableRandom random = new SplittableRandom(mix(seed + index * 0x9e3779b97f4a7c15L));
+
+        UUID id = randomUuid(random);
+        String firstName = FIRST_NAMES.sample(random);
+        String lastName = LAST_NAMES.sample(random);
+        String email = emailLocalPart(firstName, lastName, random) + "." + Long.toString(index, 36)
+                + "@" + EMAIL_DOMAINS.sample(random);
+
+        int houseNumber = 1 + (int) (Math.pow(random.nextDouble(), 2) * 9999);
+        String address = houseNumber + " " + STREET_NAMES.sample(random) + " " + STREET_SUFFIXES.sample(random)
+                + ", " + CITIES.sample(random);
+
+        int[] band = AGE_BANDS[AGE_BAND.sampleIndex(random)];
+        long ageDays = random.nextLong(band[0] * 365L, band[1] * 365L);
+        long registrationAgeDays = Math.min(Math.min(MAX_REGISTRATION_AGE_DAYS, ageDays),
+                (long) (-Math.log(1 - random.nextDouble()) * MEAN_REGISTRATION_AGE_DAYS));
+
+        return new GeneratedPatient(id, firstName + " " + lastName, email, address,
+                asOf.minusDays(ageDays), asOf.minusDays(registrationAgeDays),
+                randomUuid(random), randomUuid(random));
+    }
+
+    private static String emailLocalPart(String firstName, String lastName, SplittableRandom random) {
+        String first = firstName.toLowerCase(Locale.ROOT);
+        String last = lastName.toLowerCase(Locale.ROOT);
+        return switch (random.nextInt(5)) {
+            case 0, 1 -> first + "." + last;
+            case 2 -> first + last;
+            case 3 -> first.charAt(0) + last;
+            default -> first + "_" + last;
+        };
+    }
+
+    // Version 4 layout, like UUID.randomUUID()
+    private static UUID randomUuid(SplittableRandom random) {
+        long msb = (random.nextLong() & ~0xf000L) | 0x4000L;
+        long lsb = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,220 @@
+package org.natanxds.datagenerator;
+
+import org.natanxds.common.sharding.ConsistentHashRing;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk-loads patients, auth-service users and, when sharded, the email index with COPY. The index space is
+ * cut into batches of {@code batch-size} patients, loaded by {@code parallelism} threads; each batch is
+ * one COPY per table and shard, committed on its own. Tables are created like the services' data.sql
+ * and schema files when missing; COPY into a partitioned patient table routes rows to its partitions.
+ * Batches are not rolled back together, so a failed run leaves earlier batches (and part of the failing one)
+ * loaded: re-run it with {@code --truncate}, as loading the same seed again would hit the unique keys.
+ */
+final class PostgresLoader {
+
+    private static final String PATIENT_TABLE = """
+            CREATE TABLE IF NOT EXISTS patient
+            (
+                id              UUID PRIMARY KEY,
+                name            VARCHAR(255)        NOT NULL,
+                email           VARCHAR(255) UNIQUE NOT NULL,
+                address         VARCHAR(255)        NOT NULL,
+                date_of_birth   DATE                NOT NULL,
+                registered_date DATE                NOT NULL
+            )""";
+    private static final String USERS_TABLE = """
+            CREATE TABLE IF NOT EXISTS "users"
+            (
+                id       UUID PRIMARY KEY,
+                email    VARCHAR(255) UNIQUE NOT NULL,
+                password VARCHAR(255)        NOT NULL,
+                role     VARCHAR(50)         NOT NULL
+            )""";
+    private static final String EMAIL_INDEX_TABLE = """
+            CREATE TABLE IF NOT EXISTS patient_email_index
+            (
+                email      VARCHAR(255) PRIMARY KEY,
+                patient_id UUID NOT NULL
+            )""";
+    private static final String COPY_PATIENTS = "COPY patient (id, name, email, address, date_of_birth, "
+            + "registered_date) FROM STDIN";
+    private static final String COPY_USERS = "COPY \"users\" (id, email, password, role) FROM STDIN";
+    private static final String COPY_EMAIL_INDEX = "COPY patient_email_index (email, patient_id) FROM STDIN";
+    // Generated users log in with password123, like the seeded test user (same BCrypt hash as its data.sql)
+    private static final String PASSWORD_HASH = "$2b$12$7hoRZfJrRKD2nIm2vHLs7OBETy.LWenXXMLKf99W8M4PUwO6KB7fu";
+    private static final String GENERATED_ROLE = "USER";
+
+    private final GeneratorOptions options;
+    private final PatientGenerator generator;
+    private final ConsistentHashRing ring;
+    private final AtomicLong loaded = new AtomicLong();
+
+    PostgresLoader(GeneratorOptions options, PatientGenerator generator) {
+        this.options = options;
+        this.generator = generator;
+        this.ring = options.patientDbs().size() > 1
+                ? new ConsistentHashRing(options.patientDbs().size(), options.virtualNodes()) : null;
+    }
+
+    void load() throws SQLException, InterruptedException {
+        prepareSchema();
+
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(options.parallelism());
+        try {
+            List<Future<?>> batches = new ArrayList<>();
+            for (long from = 0; from < options.patients(); from += options.batchSize()) {
+                long batchStart = from;
+                long batchEnd = Math.min(options.patients(), from + options.batchSize());
+                batches.add(workers.submit(() -> loadBatch(batchStart, batchEnd)));
+            }
+            for (Future<?> batch : batches) {
+                while (!isDone(batch)) {
+                    report(start);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        report(start);
+    }
+
+    private void prepareSchema() throws SQLException {
+        for (String url : options.patientDbs()) {
+            execute(url, PATIENT_TABLE, options.truncate() ? "TRUNCATE patient" : null);
+        }
+        if (!options.emailIndexDb().isEmpty()) {
+            execute(options.emailIndexDb(), EMAIL_INDEX_TABLE,
+                    options.truncate() ? "TRUNCATE patient_email_index" : null);
+        }
+        if (!options.authDb().isEmpty()) {
+            // Only generated users; the seeded test user stays
+            execute(options.authDb(), USERS_TABLE,
+                    options.truncate() ? "DELETE FROM \"users\" WHERE role = '" + GENERATED_ROLE + "'" : null);
+        }
+    }
+
+    private void loadBatch(long from, long to) {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            List<Writer> patientShards = new ArrayList<>();
+            for (String url : options.patientDbs()) {
+                patientShards.add(copy(connections, url, COPY_PATIENTS));
+            }
+            Writer emailIndex = options.emailIndexDb().isEmpty()
+                    ? null : copy(connections, options.emailIndexDb(), COPY_EMAIL_INDEX);
+            Writer users = options.authDb().isEmpty() ? null : copy(connections, options.authDb(), COPY_USERS);
+
+            for (long index = from; index < to; index++) {
+                GeneratedPatient patient = generator.patient(index);
+                Writer shard = patientShards.get(ring == null ? 0 : ring.shardFor(patient.id()));
+                row(shard, patient.id(), patient.name(), patient.email(), patient.address(),
+                        patient.dateOfBirth(), patient.registeredDate());
+                if (emailIndex != null) {
+                    row(emailIndex, patient.email(), patient.id());
+                }
+                if (users != null) {
+                    row(users, patient.userId(), patient.email(), PASSWORD_HASH, GENERATED_ROLE);
+                }
+            }
+
+            // Closing a copy stream ends the COPY, which commits it
+            for (Writer shard : patientShards) {
+                shard.close();
+            }
+            if (emailIndex != null) {
+                emailIndex.close();
+            }
+            if (users != null) {
+                users.close();
+            }
+            loaded.addAndGet(to - from);
+        } catch (SQLException e) {
+            throw new IllegalStateException(failed(from, to), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(failed(from, to), e);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    // The batch has already failed or completed
+                }
+            }
+        }
+    }
+
+    private static String failed(long from, long to) {
+        return "Loading patients " + from + " to " + to + " failed; other batches stay committed, "
+                + "re-run with --truncate";
+    }
+
+    private Writer copy(List<Connection> connections, String url, String sql) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, options.dbUser(), options.dbPassword());
+        connections.add(connection);
+        PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, 1 << 16);
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    // COPY text format: tab-separated, one row per line; generated values never need escaping
+    private static void row(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writer.write(values[i].toString());
+        }
+        writer.write('\n');
+    }
+
+    private void execute(String url, String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, options.dbUser(), options.dbPassword());
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                if (sql != null) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    // Waits up to five seconds; rethrows the batch's failure
+    private static boolean isDone(Future<?> batch) throws InterruptedException {
+        try {
+            batch.get(5, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void report(long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = loaded.get();
+        System.out.printf("Postgres: %,d of %,d patients in %.0f s (%,.0f patients/s)%n",
+                rows, options.patients(), seconds, rows / Math.max(seconds, 1e-9));
+    }
+}
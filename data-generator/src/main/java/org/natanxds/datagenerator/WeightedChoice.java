@@ -0,0 +1,72 @@
+package org.natanxds.datagenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Picks values with fixed relative weights, by binary search over the cumulative weights. Immutable, so
+ * one instance is shared by all generator threads.
+ */
+final class WeightedChoice {
+
+    private final String[] values;
+    private final double[] cumulative;
+
+    WeightedChoice(List<String> values, double[] weights) {
+        if (values.isEmpty() || values.size() != weights.length) {
+            throw new IllegalArgumentException("Need one weight per value, and at least one value");
+        }
+        this.values = values.toArray(String[]::new);
+        this.cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+    }
+
+    /**
+     * Weights the i-th value (0-based) by {@code 1 / (i + 1)^exponent}, which is roughly how frequencies of
+     * names and city populations fall off with rank. Blank lines and lines starting with # are skipped.
+     */
+    static WeightedChoice zipf(String resource, double exponent) {
+        List<String> values = readLines(resource);
+        double[] weights = new double[values.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1 / Math.pow(i + 1, exponent);
+        }
+        return new WeightedChoice(values, weights);
+    }
+
+    String sample(SplittableRandom random) {
+        return values[sampleIndex(random)];
+    }
+
+    int sampleIndex(SplittableRandom random) {
+        double point = random.nextDouble(cumulative[cumulative.length - 1]);
+        int index = Arrays.binarySearch(cumulative, point);
+        // Not found: the insertion point is the first value whose cumulative weight exceeds the point
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static List<String> readLines(String resource) {
+        try (InputStream in = WeightedChoice.class.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + resource);
+            }
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
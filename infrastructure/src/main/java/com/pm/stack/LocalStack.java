@@ -2,15 +2,23 @@ package com.pm.stack;
 
 import software.amazon.awscdk.services.ecs.*;
 import software.amazon.awscdk.*;
+import software.amazon.awscdk.services.applicationautoscaling.AdjustmentType;
+import software.amazon.awscdk.services.applicationautoscaling.BasicStepScalingPolicyProps;
+import software.amazon.awscdk.services.applicationautoscaling.EnableScalingProps;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingInterval;
+import software.amazon.awscdk.services.cloudwatch.Metric;
 import software.amazon.awscdk.services.ec2.*;
 import software.amazon.awscdk.services.ec2.InstanceType;
 import software.amazon.awscdk.services.ecs.Protocol;
+import software.amazon.awscdk.services.ecs.Volume;
 import software.amazon.awscdk.services.ecs.patterns.ApplicationLoadBalancedFargateService;
+import software.amazon.awscdk.services.efs.FileSystem;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.RetentionDays;
 import software.amazon.awscdk.services.msk.CfnCluster;
 import software.amazon.awscdk.services.rds.*;
 import software.amazon.awscdk.services.route53.CfnHealthCheck;
+import software.amazon.awscdk.services.servicediscovery.DnsRecordType;
 
 import java.util.HashMap;
 import java.util.List;
@@ -46,7 +54,8 @@ public class LocalStack extends Stack {
                         "auth-service",
                         List.of(4005),
                         authServiceDb,
-                        Map.of("JWT_SECRET", "Y2hhVEc3aHJnb0hYTzMyZ2ZqVkpiZ1RkZG93YWxrUkM="));
+                        Map.of("JWT_SECRET", "Y2hhVEc3aHJnb0hYTzMyZ2ZqVkpiZ1RkZG93YWxrUkM="),
+                        null);
 
         authService.getNode().addDependency(authDbHealthCheck);
         authService.getNode().addDependency(authServiceDb);
@@ -56,6 +65,7 @@ public class LocalStack extends Stack {
                         "billing-service",
                         List.of(4001,9001),
                         null,
+                        null,
                         null);
 
         FargateService analyticsService =
@@ -63,24 +73,33 @@ public class LocalStack extends Stack {
                         "analytics-service",
                         List.of(4002),
                         null,
+                        Map.of("MANAGEMENT_CLOUDWATCH_METRICS_EXPORT_ENABLED", "true"),
                         null);
 
         analyticsService.getNode().addDependency(mskCluster);
+        Metric.grantPutMetricData(analyticsService.getTaskDefinition().getTaskRole());
 
         FargateService patientService = createFargateService("PatientService",
                 "patient-service",
                 List.of(4000),
                 patientServiceDb,
                 Map.of(
-                        "BILLING_SERVICE_ADDRESS", "host.docker.internal",
-                        "BILLING_SERVICE_GRPC_PORT", "9001"
-                ));
+                        "BILLING_SERVICE_ADDRESS", "billing-service.patient-management.local",
+                        "BILLING_SERVICE_GRPC_PORT", "9001",
+                        "BILLING_SERVICE_GRPC_LOAD_BALANCING_POLICY", "round_robin",
+                        "MANAGEMENT_CLOUDWATCH_METRICS_EXPORT_ENABLED", "true"
+                ),
+                readinessHealthCheck(4000));
         patientService.getNode().addDependency(patientServiceDb);
         patientService.getNode().addDependency(patientDbHealthCheck);
         patientService.getNode().addDependency(billingService);
         patientService.getNode().addDependency(mskCluster);
+        Metric.grantPutMetricData(patientService.getTaskDefinition().getTaskRole());
+        mountKafkaSpillVolume(patientService);
 
-        createApiGatewayService();
+        ApplicationLoadBalancedFargateService apiGateway = createApiGatewayService();
+
+        createAutoScaling(authService, patientService, apiGateway);
     }
 
     private Vpc createVpc(){
@@ -147,13 +166,14 @@ public class LocalStack extends Stack {
                                                 String imageName,
                                                 List<Integer> ports,
                                                 DatabaseInstance db,
-                                                Map<String, String> additionalEnvVars) {
+                                                Map<String, String> additionalEnvVars,
+                                                HealthCheck healthCheck) {
 
         FargateTaskDefinition taskDefinition =
                 FargateTaskDefinition.Builder.create(this, id + "Task")
                         .cpu(256)
                         .memoryLimitMiB(512)
-                        .build();
+                .build();
 
         ContainerDefinitionOptions.Builder containerOptions =
                 ContainerDefinitionOptions.builder()
@@ -190,12 +210,16 @@ public class LocalStack extends Stack {
             envVars.put("SPRING_DATASOURCE_USERNAME", "admin_user");
             envVars.put("SPRING_DATASOURCE_PASSWORD",
                     db.getSecret().secretValueFromJson("password").toString());
-            envVars.put("SPRING_JPA_HIBERNATE_DDL_AUTO", "update");
+            // Schemas come from schema.sql / data.sql; Hibernate's update would fight the partitioned patient table
+            envVars.put("SPRING_JPA_HIBERNATE_DDL_AUTO", "none");
             envVars.put("SPRING_SQL_INIT_MODE", "always");
             envVars.put("SPRING_DATASOURCE_HIKARI_INITIALIZATION_FAIL_TIMEOUT", "60000");
         }
 
         containerOptions.environment(envVars);
+        if(healthCheck != null){
+            containerOptions.healthCheck(healthCheck);
+        }
         taskDefinition.addContainer(imageName + "Container", containerOptions.build());
 
         return FargateService.Builder.create(this, id)
@@ -203,10 +227,61 @@ public class LocalStack extends Stack {
                 .taskDefinition(taskDefinition)
                 .assignPublicIp(false)
                 .serviceName(imageName)
+                .cloudMapOptions(CloudMapOptions.builder()
+                        .name(imageName)
+                        .dnsRecordType(DnsRecordType.A)
+                        .dnsTtl(Duration.seconds(10))
+                        .build())
                 .build();
     }
 
-    private void createApiGatewayService() {
+    // Events that could not reach Kafka are spilled to disk and must outlive the task that wrote them, which
+    // Fargate ephemeral storage does not. Tasks share one EFS file system; KafkaSpillLog locks a slot in it per
+    // task, and a replacement task adopts the slot a stopped one left records in.
+    private void mountKafkaSpillVolume(FargateService service){
+        FileSystem fileSystem = FileSystem.Builder.create(this, "PatientKafkaSpillFileSystem")
+                .vpc(vpc)
+                .encrypted(true)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+        fileSystem.getConnections().allowDefaultPortFrom(service);
+        TaskDefinition taskDefinition = service.getTaskDefinition();
+        fileSystem.grant(taskDefinition.getTaskRole(),
+                "elasticfilesystem:ClientMount", "elasticfilesystem:ClientWrite");
+
+        taskDefinition.addVolume(Volume.builder()
+                .name("kafka-spill")
+                .efsVolumeConfiguration(EfsVolumeConfiguration.builder()
+                        .fileSystemId(fileSystem.getFileSystemId())
+                        .transitEncryption("ENABLED")
+                        .authorizationConfig(AuthorizationConfig.builder()
+                                .iam("ENABLED")
+                                .build())
+                        .build())
+                .build());
+        ContainerDefinition container = taskDefinition.getDefaultContainer();
+        container.addMountPoints(MountPoint.builder()
+                .sourceVolume("kafka-spill")
+                .containerPath("/mnt/kafka-spill")
+                .readOnly(false)
+                .build());
+        container.addEnvironment("KAFKA_SPILL_DIRECTORY", "/mnt/kafka-spill");
+    }
+
+    // Until the task reports healthy, ECS keeps it out of Cloud Map and deployments keep the old task running.
+    // The readiness probe stays DOWN while the service warms up, so startPeriod has to cover startup plus warm-up.
+    private HealthCheck readinessHealthCheck(int port){
+        return HealthCheck.builder()
+                .command(List.of("CMD-SHELL",
+                        "curl -fs http://localhost:%d/actuator/health/readiness || exit 1".formatted(port)))
+                .interval(Duration.seconds(10))
+                .timeout(Duration.seconds(5))
+                .retries(3)
+                .startPeriod(Duration.seconds(180))
+                .build();
+    }
+
+    private ApplicationLoadBalancedFargateService createApiGatewayService() {
         FargateTaskDefinition taskDefinition =
                 FargateTaskDefinition.Builder.create(this, "APIGatewayTaskDefinition")
                         .cpu(256)
@@ -240,16 +315,85 @@ public class LocalStack extends Stack {
 
         taskDefinition.addContainer("APIGatewayContainer", containerOptions);
 
-        ApplicationLoadBalancedFargateService apiGateway =
-                ApplicationLoadBalancedFargateService.Builder.create(this, "APIGatewayService")
-                        .cluster(ecsCluster)
-                        .serviceName("api-gateway")
-                        .taskDefinition(taskDefinition)
-                        .desiredCount(1)
-                        .healthCheckGracePeriod(Duration.seconds(60))
+        return ApplicationLoadBalancedFargateService.Builder.create(this, "APIGatewayService")
+                .cluster(ecsCluster)
+                .serviceName("api-gateway")
+                .taskDefinition(taskDefinition)
+                .desiredCount(1)
+                .healthCheckGracePeriod(Duration.seconds(60))
                         .build();
     }
 
+    // The services without per-task state scale on CPU; patient-service adds the signals it saturates on first,
+    // published to CloudWatch by the service itself (see CloudWatchMetricsConfig in service-common).
+    // Scaling out wins as soon as any policy asks for it, scaling in needs every target-tracking policy to agree.
+    private void createAutoScaling(FargateService authService,
+                                   FargateService patientService,
+                                   ApplicationLoadBalancedFargateService apiGateway) {
+        scaleOnCpu(authService, 1, 4);
+        // billing-service is not scaled: its accounts live in memory per task (see BillingAccountStore), so a
+        // second task would give each patient-service call a different view and reconciliation would create
+        // duplicate accounts.
+
+        ScalableTaskCount apiGatewayScaling = scaleOnCpu(apiGateway.getService(), 1, 6);
+        // ALB requests per task and minute
+        apiGatewayScaling.scaleOnRequestCount("RequestCountScaling", RequestCountScalingProps.builder()
+                .targetGroup(apiGateway.getTargetGroup())
+                .requestsPerTarget(6000)
+                .scaleInCooldown(Duration.seconds(300))
+                .scaleOutCooldown(Duration.seconds(60))
+                .build());
+
+        ScalableTaskCount patientScaling = scaleOnCpu(patientService, 2, 10);
+        // Requests per task and minute, 503s from the concurrency limiter included: those are demand too
+        patientScaling.scaleToTrackCustomMetric("RequestCountScaling", TrackCustomMetricProps.builder()
+                .metric(serviceMetric("patient-service", "http.server.requests.count", Map.of()))
+                .targetValue(3000)
+                .scaleInCooldown(Duration.seconds(300))
+                .scaleOutCooldown(Duration.seconds(60))
+                .build());
+        // p99 latency in ms, averaged over the tasks; scale-out only, the policies above handle scale-in
+        patientScaling.scaleOnMetric("LatencyScaling", BasicStepScalingPolicyProps.builder()
+                .metric(serviceMetric("patient-service", "http.server.requests.percentile", Map.of("phi", "0.99")))
+                .scalingSteps(List.of(
+                        ScalingInterval.builder().lower(250).change(1).build(),
+                        ScalingInterval.builder().lower(1000).change(3).build()))
+                .adjustmentType(AdjustmentType.CHANGE_IN_CAPACITY)
+                .evaluationPeriods(2)
+                .cooldown(Duration.seconds(120))
+                .build());
+
+        // analytics-service is not scaled and stays at its one task: the dedup window and the aggregates are per
+        // instance, so a second task would take half the partitions and each would serve partial, inconsistent
+        // analytics. Partition the state across instances before giving it a scaling target.
+    }
+
+    private ScalableTaskCount scaleOnCpu(BaseService service, int minTasks, int maxTasks) {
+        ScalableTaskCount scaling = service.autoScaleTaskCount(EnableScalingProps.builder()
+                .minCapacity(minTasks)
+                .maxCapacity(maxTasks)
+                .build());
+        scaling.scaleOnCpuUtilization("CpuScaling", CpuUtilizationScalingProps.builder()
+                .targetUtilizationPercent(60)
+                .scaleInCooldown(Duration.seconds(300))
+                .scaleOutCooldown(Duration.seconds(60))
+                .build());
+        return scaling;
+    }
+
+    // Averaged over the service's tasks, each of which publishes one value per minute
+    private static Metric serviceMetric(String service, String metricName, Map<String, String> dimensions) {
+        Map<String, String> dimensionsMap = new HashMap<>(dimensions);
+        dimensionsMap.put("service", service);
+        return Metric.Builder.create()
+                .namespace("PatientManagement")
+                .metricName(metricName)
+                .dimensionsMap(dimensionsMap)
+                .statistic("Average")
+                .period(Duration.minutes(1))
+                .build();
+    }
+
     public static void main(final String[] args) {
         App app = new App(AppProps.builder().outdir("./cdk.out").build());
 
@@ -0,0 +1,131 @@
+package com.pm.stack;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awscdk.App;
+import software.amazon.awscdk.BootstraplessSynthesizer;
+import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.assertions.Match;
+import software.amazon.awscdk.assertions.Template;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Synthesizes the stack and checks the scaling policies, plus a snapshot of the whole template in
+ * src/test/resources. The snapshot is written when missing; after an intended change, regenerate it with
+ * {@code mvn test -Dsnapshot.update=true} and review the diff.
+ */
+class LocalStackTest {
+
+    private static final Path SNAPSHOT = Path.of("src/test/resources/localstack.template.json");
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private static Template template;
+
+    @BeforeAll
+    static void synthesize() {
+        LocalStack stack = new LocalStack(new App(), "localstack", StackProps.builder()
+                .synthesizer(new BootstraplessSynthesizer())
+                .build());
+        template = Template.fromStack(stack);
+    }
+
+    @Test
+    void matchesSnapshot() throws IOException {
+        String actual = MAPPER.writeValueAsString(template.toJSON()) + "\n";
+        if (Boolean.getBoolean("snapshot.update") || !Files.exists(SNAPSHOT)) {
+            Files.createDirectories(SNAPSHOT.getParent());
+            Files.writeString(SNAPSHOT, actual);
+            return;
+        }
+        assertEquals(Files.readString(SNAPSHOT), actual,
+                "Template differs from " + SNAPSHOT + "; rerun with -Dsnapshot.update=true if intended");
+    }
+
+    @Test
+    void statelessServicesScaleOnCpu() {
+        template.resourceCountIs("AWS::ApplicationAutoScaling::ScalableTarget", 3);
+        template.resourcePropertiesCountIs("AWS::ApplicationAutoScaling::ScalingPolicy", Map.of(
+                "PolicyType", "TargetTrackingScaling",
+                "TargetTrackingScalingPolicyConfiguration", Match.objectLike(Map.of(
+                        "PredefinedMetricSpecification", Map.of(
+                                "PredefinedMetricType", "ECSServiceAverageCPUUtilization"),
+                        "TargetValue", 60)))), 3);
+    }
+
+    @Test
+    void patientServiceSpillsToEfs() {
+        template.resourceCountIs("AWS::EFS::FileSystem", 1);
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", Map.of(
+                "Volumes", List.of(Match.objectLike(Map.of(
+                        "Name", "kafka-spill",
+                        "EFSVolumeConfiguration", Match.objectLike(Map.of(
+                                "TransitEncryption", "ENABLED"))))),
+                "ContainerDefinitions", List.of(Match.objectLike(Map.of(
+                        "MountPoints", List.of(Map.of(
+                                "ContainerPath", "/mnt/kafka-spill",
+                                "ReadOnly", false,
+                                "SourceVolume", "kafka-spill")),
+                        "Environment", Match.arrayWith(List.of(Map.of(
+                                "Name", "KAFKA_SPILL_DIRECTORY",
+                                "Value", "/mnt/kafka-spill"))))))));
+    }
+
+    @Test
+    void apiGatewayScalesOnRequestCountPerTarget() {
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalingPolicy", Map.of(
+                "TargetTrackingScalingPolicyConfiguration", Match.objectLike(Map.of(
+                        "PredefinedMetricSpecification", Match.objectLike(Map.of(
+                                "PredefinedMetricType", "ALBRequestCountPerTarget")),
+                        "TargetValue", 6000))));
+    }
+
+    @Test
+    void patientServiceTracksRequestsPerTask() {
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalingPolicy", Map.of(
+                "TargetTrackingScalingPolicyConfiguration", Match.objectLike(Map.of(
+                        "CustomizedMetricSpecification", Map.of(
+                                "Namespace", "PatientManagement",
+                                "MetricName", "http.server.requests.count",
+                                "Dimensions", List.of(Map.of("Name", "service", "Value", "patient-service")),
+                                "Statistic", "Average"),
+                        "TargetValue", 3000))));
+    }
+
+    @Test
+    void patientServiceScalesOutOnP99Latency() {
+        template.hasResourceProperties("AWS::CloudWatch::Alarm", Map.of(
+                "Namespace", "PatientManagement",
+                "MetricName", "http.server.requests.percentile",
+                "Dimensions", Match.arrayWith(List.of(Map.of("Name", "phi", "Value", "0.99"))),
+                "ComparisonOperator", "GreaterThanOrEqualToThreshold",
+                "Threshold", 250));
+    }
+
+    @Test
+    void statefulServicesHaveNoScalingTarget() {
+        // analytics-service and billing-service stay at one task: no lag alarm, and no target pinned at 1..1
+        template.resourcePropertiesCountIs("AWS::CloudWatch::Alarm", Map.of(
+                "MetricName", "analytics.consumer.lag"), 0);
+        template.resourcePropertiesCountIs("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "MaxCapacity", 1), 0);
+    }
+
+    @Test
+    void metricPublishersMayPutMetricData() {
+        template.resourcePropertiesCountIs("AWS::IAM::Policy", Map.of(
+                "PolicyDocument", Match.objectLike(Map.of(
+                        "Statement", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                                "Action", "cloudwatch:PutMetricData"))))))), 2);
+    }
+}
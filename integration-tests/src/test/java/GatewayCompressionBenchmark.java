@@ -0,0 +1,102 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches the patient list through the running gateway with each Accept-Encoding and reports bytes on the
+ * wire and time per response. gzip CPU per MB is measured in-process on the same payload, since gateway
+ * CPU is not observable from here.
+ * Usage: GatewayCompressionBenchmark [requestsPerEncoding]
+ */
+public class GatewayCompressionBenchmark {
+
+    private static final String BASE_URL = "http://localhost:4004";
+    private static final double MB = 1024.0 * 1024.0;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        HttpClient client = HttpClient.newHttpClient();
+        String token = login(client);
+
+        byte[] identityBody = null;
+        for (String encoding : List.of("identity", "gzip", "br")) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/v1/patients"))
+                    .header("Authorization", "Bearer " + token)
+                    .header("Accept-Encoding", encoding)
+                    .GET()
+                    .build();
+
+            long wireBytes = 0;
+            String contentEncoding = "identity";
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                // java.net.http does not decode, so the body length is what crossed the wire
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                wireBytes += response.body().length;
+                contentEncoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+                if (identityBody == null && "identity".equals(contentEncoding)) {
+                    identityBody = response.body();
+                }
+            }
+            double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            System.out.printf("accept=%-8s served=%-8s bytes/response=%d avg=%.2f ms%n",
+                    encoding, contentEncoding, wireBytes / requests, elapsedMs / requests);
+        }
+
+        if (identityBody != null) {
+            System.out.printf("gzip cpu=%.2f ms per MB of JSON, ratio=%.2f%n",
+                    gzipCpuMsPerMb(identityBody, requests), gzipRatio(identityBody));
+        }
+    }
+
+    private static double gzipCpuMsPerMb(byte[] body, int iterations) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < iterations; i++) {
+            gzip(body);
+        }
+        double cpuMs = (threads.getCurrentThreadCpuTime() - start) / 1_000_000.0;
+        return cpuMs / (body.length * (double) iterations / MB);
+    }
+
+    private static double gzipRatio(byte[] body) throws IOException {
+        return body.length / (double) gzip(body).length;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static String login(HttpClient client) throws Exception {
+        HttpRequest login = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {
+                            "email": "testuser@test.com",
+                            "password": "password123"
+                        }
+                        """))
+                .build();
+        String body = client.send(login, HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Login failed: " + body);
+        }
+        return matcher.group(1);
+    }
+}
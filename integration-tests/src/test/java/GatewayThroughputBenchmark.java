@@ -0,0 +1,84 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load against the running gateway (docker compose up), for comparing gateway settings.
+ * Usage: GatewayThroughputBenchmark [concurrency] [seconds] [gatewayCores]
+ * Reports requests/s and requests/s per gateway core; run before and after a change with the same args.
+ * Requests one small page after a random cursor each time, so every request is proxied to patient-service:
+ * the gateway caches page reads by URI, and a repeated URI would measure its response cache instead.
+ */
+public class GatewayThroughputBenchmark {
+
+    private static final String BASE_URL = "http://localhost:4004";
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int gatewayCores = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        String token = login(client);
+
+        LongAdder ok = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL
+                                        + "/api/v1/patients/page?size=20&after=" + UUID.randomUUID()))
+                                .header("Authorization", "Bearer " + token)
+                                .GET()
+                                .build();
+                        try {
+                            HttpResponse<Void> response = client.send(request,
+                                    HttpResponse.BodyHandlers.discarding());
+                            (response.statusCode() == 200 ? ok : failed).increment();
+                        } catch (Exception e) {
+                            failed.increment();
+                        }
+                    }
+                });
+            }
+        }
+
+        double rps = ok.sum() / (double) seconds;
+        System.out.printf("concurrency=%d duration=%ds ok=%d failed=%d%n",
+                concurrency, seconds, ok.sum(), failed.sum());
+        System.out.printf("throughput=%.1f req/s, %.1f req/s per gateway core%n",
+                rps, rps / gatewayCores);
+    }
+
+    private static String login(HttpClient client) throws Exception {
+        HttpRequest login = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {
+                            "email": "testuser@test.com",
+                            "password": "password123"
+                        }
+                        """))
+                .build();
+        String body = client.send(login, HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Login failed: " + body);
+        }
+        return matcher.group(1);
+    }
+}
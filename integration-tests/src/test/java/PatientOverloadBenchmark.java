@@ -0,0 +1,101 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load on patient reads through the gateway (docker compose up), stepping the number of clients
+ * past the point where patient-service saturates. For every step it reports goodput (200s answered within
+ * the SLO, per second), slow 200s, 503 rejections from the concurrency limiter and other failures. With the
+ * limiter, goodput should level off instead of collapsing; compare with patient.concurrency-limit.enabled=false.
+ * Usage: PatientOverloadBenchmark [secondsPerStep] [sloMillis] [clients...]
+ * Results: not measured yet. Goodput per step, with and without the limiter, is still outstanding.
+ */
+public class PatientOverloadBenchmark {
+
+    private static final String BASE_URL = "http://localhost:4004";
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        long sloNanos = TimeUnit.MILLISECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 500);
+        int[] steps = args.length > 2
+                ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{8, 32, 128, 512, 1024};
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        String token = login(client);
+
+        for (int clients : steps) {
+            LongAdder good = new LongAdder();
+            LongAdder slow = new LongAdder();
+            LongAdder rejected = new LongAdder();
+            LongAdder failed = new LongAdder();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < clients; i++) {
+                    executor.submit(() -> {
+                        while (System.nanoTime() < deadline) {
+                            // A random cursor per request keeps the gateway's response cache out of the measurement
+                            HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL
+                                            + "/api/v1/patients/page?size=20&after=" + UUID.randomUUID()))
+                                    .header("Authorization", "Bearer " + token)
+                                    .timeout(Duration.ofSeconds(10))
+                                    .GET()
+                                    .build();
+                            long start = System.nanoTime();
+                            try {
+                                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                                if (status == 200) {
+                                    (System.nanoTime() - start <= sloNanos ? good : slow).increment();
+                                } else if (status == 503) {
+                                    rejected.increment();
+                                    // Back off like a client honouring Retry-After would, instead of spinning
+                                    Thread.sleep(50);
+                                } else {
+                                    failed.increment();
+                                }
+                            } catch (InterruptedException e) {
+                                return;
+                            } catch (Exception e) {
+                                failed.increment();
+                            }
+                        }
+                    });
+                }
+            }
+
+            System.out.printf("clients=%d goodput=%.1f req/s slow=%d rejected=%d failed=%d%n",
+                    clients, good.sum() / (double) seconds, slow.sum(), rejected.sum(), failed.sum());
+        }
+    }
+
+    private static String login(HttpClient client) throws Exception {
+        HttpRequest login = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {
+                            "email": "testuser@test.com",
+                            "password": "password123"
+                        }
+                        """))
+                .build();
+        String body = client.send(login, HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Login failed: " + body);
+        }
+        return matcher.group(1);
+    }
+}
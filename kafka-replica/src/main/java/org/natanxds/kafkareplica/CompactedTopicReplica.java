@@ -0,0 +1,190 @@
+package org.natanxds.kafkareplica;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of a log-compacted, string-keyed topic. Every instance reads all partitions from the
+ * beginning without a consumer group, so each one holds the full key space; records with a null value
+ * (tombstones) remove the key. The replica counts as restored once it has caught up with the end offsets
+ * seen at startup, and keeps following the topic afterwards.
+ * Lookups are plain {@link ConcurrentHashMap} reads and never touch the network.
+ * <p>
+ * With a version header (null for none), a record older than the one held for its key is dropped, so a producer that
+ * replays a stale record, or a backfill racing live updates, cannot roll a key back. The header holds a
+ * big-endian long; records without it apply in log order. A tombstone leaves a small marker with its
+ * version behind, so an older snapshot replayed after the delete does not bring the key back.
+ * <p>
+ * Depends on kafka-clients only; the consumer supplier lets a Spring service pass its
+ * {@code ConsumerFactory}, e.g. {@code () -> consumerFactory.createConsumer(null, "replica-" + topic)}.
+ */
+public class CompactedTopicReplica<V> implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            CompactedTopicReplica.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    private final Supplier<Consumer<String, byte[]>> consumerSupplier;
+    private final String topic;
+    private final String versionHeader;
+    private final Decoder<V> decoder;
+    // Deleted keys stay as entries with a null value; size counts live keys only
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final CountDownLatch restored = new CountDownLatch(1);
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Consumer<String, byte[]> consumer;
+
+    public CompactedTopicReplica(Supplier<Consumer<String, byte[]>> consumerSupplier, String topic,
+                                 String versionHeader, Decoder<V> decoder) {
+        this.consumerSupplier = consumerSupplier;
+        this.topic = topic;
+        this.versionHeader = versionHeader;
+        this.decoder = decoder;
+        this.thread = Thread.ofPlatform().name("replica-" + topic).daemon().unstarted(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isRestored() {
+        return restored.getCount() == 0;
+    }
+
+    public boolean awaitRestored(Duration timeout) throws InterruptedException {
+        return restored.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Consumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try (Consumer<String, byte[]> kafkaConsumer = consumerSupplier.get()) {
+            consumer = kafkaConsumer;
+            List<TopicPartition> partitions = awaitPartitions(kafkaConsumer);
+            kafkaConsumer.assign(partitions);
+            kafkaConsumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> restoreTo = kafkaConsumer.endOffsets(partitions);
+            long start = System.nanoTime();
+
+            while (running) {
+                for (ConsumerRecord<String, byte[]> record : kafkaConsumer.poll(POLL_TIMEOUT)) {
+                    apply(record);
+                }
+                if (!isRestored() && restoreTo.entrySet().stream()
+                        .allMatch(end -> kafkaConsumer.position(end.getKey()) >= end.getValue())) {
+                    restored.countDown();
+                    log.info("Restored {} entries from {} in {} ms", size.get(), topic,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Replica of {} stopped", topic, e);
+        }
+    }
+
+    // Called from the replica thread only, so the read and the write below cannot interleave with another apply
+    void apply(ConsumerRecord<String, byte[]> record) {
+        if (record.key() == null) {
+            return;
+        }
+        long version = version(record);
+        Entry<V> current = entries.get(record.key());
+        if (current != null && version != NO_VERSION && version < current.version()) {
+            return;
+        }
+        V value = null;
+        if (record.value() != null) {
+            try {
+                value = decoder.decode(record.value());
+            } catch (Exception e) {
+                log.warn("Skipping undecodable record {}@{} of {}: {}", record.offset(), record.partition(), topic,
+                        e.getMessage());
+                return;
+            }
+        }
+        if (value == null && version == NO_VERSION) {
+            entries.remove(record.key());
+        } else {
+            // An unversioned record keeps the version it replaces, so older versioned records stay rejected
+            entries.put(record.key(), new Entry<>(version == NO_VERSION && current != null ? current.version()
+                    : version, value));
+        }
+        size.addAndGet((value != null ? 1 : 0) - (current != null && current.value() != null ? 1 : 0));
+    }
+
+    private long version(ConsumerRecord<String, byte[]> record) {
+        Header header = versionHeader == null ? null : record.headers().lastHeader(versionHeader);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return NO_VERSION;
+        }
+        return ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    // The topic is created by its producer, which may start after us
+    private List<TopicPartition> awaitPartitions(Consumer<String, byte[]> kafkaConsumer) throws InterruptedException {
+        while (running) {
+            List<PartitionInfo> infos = kafkaConsumer.partitionsFor(topic);
+            if (infos != null && !infos.isEmpty()) {
+                return infos.stream().map(info -> new TopicPartition(topic, info.partition())).toList();
+            }
+            Thread.sleep(POLL_TIMEOUT.toMillis());
+        }
+        throw new WakeupException();
+    }
+
+    private record Entry<V>(long version, V value) {
+    }
+
+    @FunctionalInterface
+    public interface Decoder<V> {
+        V decode(byte[] value) throws Exception;
+    }
+}
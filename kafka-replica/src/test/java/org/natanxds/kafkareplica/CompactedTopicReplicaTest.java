@@ -0,0 +1,68 @@
+package org.natanxds.kafkareplica;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompactedTopicReplicaTest {
+
+    private static final String VERSION_HEADER = "updated-at-ms";
+
+    private final CompactedTopicReplica<String> replica = new CompactedTopicReplica<>(
+            () -> {
+                throw new UnsupportedOperationException();
+            }, "topic", VERSION_HEADER, value -> new String(value, StandardCharsets.UTF_8));
+
+    @Test
+    void keepsTheNewestVersionPerKey() {
+        replica.apply(record("a", "v2", 2));
+        replica.apply(record("a", "v1", 1));
+        assertEquals("v2", replica.get("a"));
+
+        replica.apply(record("a", "v3", 3));
+        assertEquals("v3", replica.get("a"));
+        assertEquals(1, replica.size());
+    }
+
+    @Test
+    void olderSnapshotDoesNotReviveADeletedKey() {
+        replica.apply(record("a", "v1", 1));
+        replica.apply(record("a", null, 2));
+        replica.apply(record("a", "v1", 1));
+
+        assertNull(replica.get("a"));
+        assertEquals(0, replica.size());
+
+        replica.apply(record("a", "v3", 3));
+        assertEquals("v3", replica.get("a"));
+        assertEquals(1, replica.size());
+    }
+
+    @Test
+    void recordsWithoutVersionApplyInLogOrder() {
+        replica.apply(record("a", "v1", null));
+        replica.apply(record("a", "v0", null));
+        assertEquals("v0", replica.get("a"));
+
+        replica.apply(record("a", null, null));
+        assertNull(replica.get("a"));
+        assertEquals(0, replica.size());
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String key, String value, Integer version) {
+        RecordHeaders headers = new RecordHeaders();
+        if (version != null) {
+            headers.add(VERSION_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(version).array());
+        }
+        return new ConsumerRecord<>("topic", 0, 0, 0, TimestampType.CREATE_TIME, -1, -1, key,
+                value == null ? null : value.getBytes(StandardCharsets.UTF_8), headers, Optional.empty());
+    }
+}
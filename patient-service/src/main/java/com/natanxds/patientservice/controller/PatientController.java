@@ -1,18 +1,37 @@
 package com.natanxds.patientservice.controller;
 
+import com.natanxds.patientservice.dto.PatientPageDTO;
 import com.natanxds.patientservice.dto.PatientRequestDTO;
 import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.dto.PatientsVersionDTO;
 import com.natanxds.patientservice.dto.validators.CreatePatientValidationGroup;
+import com.natanxds.patientservice.export.ExportFormat;
+import com.natanxds.patientservice.export.PatientExporter;
+import com.natanxds.patientservice.service.IdempotencyService;
 import com.natanxds.patientservice.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.groups.Default;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.Duration;
 import java.util.UUID;
 
 @RestController
@@ -20,23 +39,80 @@ import java.util.UUID;
 @Tag(name = "Patient", description = "API for managing patients")
 public class PatientController {
     private final PatientService patientService;
+    private final IdempotencyService idempotencyService;
+    private final PatientExporter patientExporter;
+    private final CacheControl patientsCacheControl;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService,
+                             IdempotencyService idempotencyService,
+                             PatientExporter patientExporter,
+                             @Value("${patients.cache.max-age-seconds:5}") long maxAgeSeconds) {
         this.patientService = patientService;
+        this.idempotencyService = idempotencyService;
+        this.patientExporter = patientExporter;
+        this.patientsCacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds));
     }
 
     @GetMapping
     @Operation(summary = "Get all patients")
-    public ResponseEntity<List<PatientResponseDTO>> getPatients() {
-        return ResponseEntity.ok().body(patientService.getPatients());
+    @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = PatientResponseDTO.class))))
+    public ResponseEntity<StreamingResponseBody> getPatients(WebRequest request) {
+        // Read the version before the list so a concurrent write can only make the ETag older, never newer
+        PatientsVersionDTO version = patientService.getPatientsVersion();
+        String eTag = "\"" + version.version() + "\"";
+        long lastModified = version.lastModified().toEpochMilli();
+
+        // checkNotModified already writes the ETag and Last-Modified headers
+        if (request.checkNotModified(eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(patientsCacheControl)
+                    .varyBy(HttpHeaders.AUTHORIZATION)
+                    .build();
+        }
+
+        // Rows are written straight from the entity stream; no List or DTO per patient is built
+        StreamingResponseBody body = patientService::writePatients;
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(patientsCacheControl)
+                .varyBy(HttpHeaders.AUTHORIZATION)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/page")
+    @Operation(summary = "Get one page of patients ordered by id; pass nextCursor as 'after' for the next page")
+    public ResponseEntity<PatientPageDTO> getPatientsPage(
+            @RequestParam(value = "after", required = false) UUID after,
+            @RequestParam(value = "size", defaultValue = "100") @Min(1) @Max(500) int size) {
+        return ResponseEntity.ok().body(patientService.getPatientsPage(after, size));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export all patients as CSV or PARQUET, streamed while the table is read")
+    public ResponseEntity<StreamingResponseBody> exportPatients(
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format) {
+        StreamingResponseBody body = out -> patientExporter.export(format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("patients." + format.extension()).build().toString())
+                .contentType(format.mediaType())
+                .body(body);
     }
 
     @PostMapping
     @Operation(summary = "Create a new patient")
     public ResponseEntity<PatientResponseDTO> createPatient(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody @Validated({Default.class, CreatePatientValidationGroup.class})
             PatientRequestDTO patientRequestDTO) {
-        return ResponseEntity.ok().body(patientService.createPatient(patientRequestDTO));
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return ResponseEntity.ok().body(patientService.createPatient(patientRequestDTO));
+        }
+        return ResponseEntity.ok().body(idempotencyService.execute(idempotencyKey, patientRequestDTO,
+                () -> patientService.createPatient(patientRequestDTO)));
     }
 
     @PutMapping("/{id}")
@@ -0,0 +1,10 @@
+package com.natanxds.patientservice.dto;
+
+import java.util.List;
+
+public record PatientPageDTO(
+        List<PatientResponseDTO> patients,
+        String nextCursor
+) {
+
+}
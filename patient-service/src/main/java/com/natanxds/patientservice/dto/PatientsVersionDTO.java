@@ -0,0 +1,10 @@
+package com.natanxds.patientservice.dto;
+
+import java.time.Instant;
+
+public record PatientsVersionDTO(
+        long version,
+        Instant lastModified
+) {
+
+}
@@ -1,6 +1,7 @@
 package com.natanxds.patientservice.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -25,7 +26,8 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(EmailAlreadyExistsException.class)
     public ResponseEntity<Map<String, String>> handleEmailAlreadyExistsException(EmailAlreadyExistsException e) {
-        log.warn("Email already exists {}" , e.getMessage());
+        // The exception message carries the address itself
+        log.warn("Email already exists");
         Map<String, String> errors = new HashMap<>();
         errors.put("message", "Email address already exists");
         return ResponseEntity.badRequest().body(errors);
@@ -38,4 +40,21 @@ public class GlobalExceptionHandler {
         errors.put("message", "Patient not found");
         return ResponseEntity.badRequest().body(errors);
     }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException e) {
+        log.warn("Idempotency key reused {}" , e.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message", "Idempotency key was already used with a different request");
+        return ResponseEntity.unprocessableEntity().body(errors);
+    }
+
+    @ExceptionHandler(IdempotencyRequestInProgressException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyRequestInProgressException(
+            IdempotencyRequestInProgressException e) {
+        log.warn("Idempotency key in progress {}" , e.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message", "A request with this idempotency key is still being processed; retry later");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errors);
+    }
 }
@@ -0,0 +1,7 @@
+package com.natanxds.patientservice.exception;
+
+public class IdempotencyRequestInProgressException extends RuntimeException {
+    public IdempotencyRequestInProgressException(String message) {
+        super(message);
+    }
+}
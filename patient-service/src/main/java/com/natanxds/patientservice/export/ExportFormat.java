@@ -0,0 +1,28 @@
+package com.natanxds.patientservice.export;
+
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+    CSV("csv", new MediaType("text", "csv")),
+    PARQUET("parquet", new MediaType("application", "vnd.apache.parquet"));
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public static ExportFormat forFileName(String fileName) {
+        return fileName.endsWith("." + PARQUET.extension) ? PARQUET : CSV;
+    }
+}
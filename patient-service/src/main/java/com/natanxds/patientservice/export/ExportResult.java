@@ -0,0 +1,14 @@
+package com.natanxds.patientservice.export;
+
+import java.time.Duration;
+
+public record ExportResult(
+        long rows,
+        Duration elapsed
+) {
+
+    public long rowsPerSecond() {
+        long millis = Math.max(1, elapsed.toMillis());
+        return rows * 1000 / millis;
+    }
+}
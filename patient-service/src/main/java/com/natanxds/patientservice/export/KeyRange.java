@@ -0,0 +1,24 @@
+package com.natanxds.patientservice.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A slice {@code [lower, upper)} of the uuid keyspace; {@code upper} is null for the last slice. Slices are
+ * cut on the most significant bits, compared unsigned as Postgres orders uuids, so random (v4) ids spread
+ * evenly across them.
+ */
+public record KeyRange(UUID lower, UUID upper) {
+
+    public static List<KeyRange> split(int count) {
+        long step = Long.divideUnsigned(-1L, count) + 1;
+        List<KeyRange> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID lower = new UUID(step * i, 0);
+            UUID upper = i == count - 1 ? null : new UUID(step * (i + 1), 0);
+            ranges.add(new KeyRange(lower, upper));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,65 @@
+package com.natanxds.patientservice.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Command-line export: started with {@code --patient.export.output=<file>} (and usually
+ * {@code --spring.main.web-application-type=none --patient.warmup.enabled=false}) the service writes every
+ * patient to that file and exits.
+ * The format follows {@code patient.export.format}, or the file extension when unset. The file is written
+ * under a temporary name and moved into place once complete.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.export.output")
+public class PatientExportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientExportRunner.class);
+
+    private final PatientExporter patientExporter;
+    private final ConfigurableApplicationContext context;
+    private final Path output;
+    private final ExportFormat format;
+
+    public PatientExportRunner(PatientExporter patientExporter,
+                               ConfigurableApplicationContext context,
+                               @Value("${patient.export.output}") String output,
+                               @Value("${patient.export.format:}") String format) {
+        this.patientExporter = patientExporter;
+        this.context = context;
+        this.output = Path.of(output).toAbsolutePath();
+        this.format = format.isBlank() ? ExportFormat.forFileName(output) : ExportFormat.valueOf(format.toUpperCase());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Files.createDirectories(output.getParent());
+        Path partial = output.resolveSibling(output.getFileName() + ".partial");
+        ExportResult result;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16)) {
+            result = patientExporter.export(format, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Wrote {} patients to {} ({} rows/s)", result.rows(), output, result.rowsPerSecond());
+
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,206 @@
+package com.natanxds.patientservice.export;
+
+import com.natanxds.patientservice.mapper.PatientCsvWriter;
+import com.natanxds.patientservice.mapper.PatientParquetWriter;
+import com.natanxds.patientservice.mapper.PatientWriter;
+import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the whole patient table without loading it. Every shard's uuid keyspace is cut into
+ * {@code ranges-per-shard} slices, read by {@code parallelism} threads through server-side cursors
+ * ({@code fetch-size} rows per round trip), and handed in batches to the single thread that writes the
+ * output. The hand-off queue holds at most {@code queue-batches} batches and readers wait when it is full,
+ * so memory stays bounded by the queue, one batch per reader and the writer's own buffer, whatever the
+ * table size. Rows come out grouped by slice, not in id order.
+ * <p>
+ * The reader threads are shared by all exports, so exports never hold more than {@code parallelism}
+ * connections of the pool between them, whatever the number of concurrent requests; keep it well below
+ * the Hikari pool size. Concurrent exports queue for the readers instead of starving the request path.
+ */
+@Component
+public class PatientExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientExporter.class);
+    private static final String SELECT = "select id, name, email, address, date_of_birth, registered_date "
+            + "from patient where id >= ?";
+    private static final String SELECT_BOUNDED = SELECT + " and id < ?";
+    private static final ThreadFactory READER_THREADS = Thread.ofPlatform()
+            .name("patient-export-", 0).daemon().factory();
+
+    private final DataSource dataSource;
+    private final PatientShardRouter patientShardRouter;
+    private final ExecutorService readers;
+    private final int rangesPerShard;
+    private final int fetchSize;
+    private final int queueBatches;
+    private final CompressionCodecName parquetCompression;
+    private final long parquetRowGroupBytes;
+
+    public PatientExporter(DataSource dataSource,
+                           PatientShardRouter patientShardRouter,
+                           @Value("${patient.export.parallelism:4}") int parallelism,
+                           @Value("${patient.export.ranges-per-shard:16}") int rangesPerShard,
+                           @Value("${patient.export.fetch-size:1000}") int fetchSize,
+                           @Value("${patient.export.queue-batches:8}") int queueBatches,
+                           @Value("${patient.export.parquet.compression:SNAPPY}") CompressionCodecName parquetCompression,
+                           @Value("${patient.export.parquet.row-group-bytes:16777216}") long parquetRowGroupBytes) {
+        this.dataSource = dataSource;
+        this.patientShardRouter = patientShardRouter;
+        this.readers = Executors.newFixedThreadPool(parallelism, READER_THREADS);
+        this.rangesPerShard = rangesPerShard;
+        this.fetchSize = fetchSize;
+        this.queueBatches = queueBatches;
+        this.parquetCompression = parquetCompression;
+        this.parquetRowGroupBytes = parquetRowGroupBytes;
+    }
+
+    public ExportResult export(ExportFormat format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        BlockingQueue<List<Patient>> queue = new ArrayBlockingQueue<>(queueBatches);
+        List<Future<?>> tasks = new ArrayList<>();
+        try (PatientWriter writer = openWriter(format, out)) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            List<CompletableFuture<Void>> reads = new ArrayList<>();
+            for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+                for (KeyRange range : KeyRange.split(rangesPerShard)) {
+                    int target = shard;
+                    CompletableFuture<Void> read = new CompletableFuture<>();
+                    tasks.add(readers.submit(() -> {
+                        try {
+                            read(target, range, queue);
+                            read.complete(null);
+                        } catch (RuntimeException e) {
+                            read.completeExceptionally(e);
+                            failed.completeExceptionally(e);
+                        }
+                    }));
+                    reads.add(read);
+                }
+            }
+            CompletableFuture<Void> done = CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new));
+
+            while (true) {
+                List<Patient> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    for (Patient patient : batch) {
+                        writer.write(patient);
+                    }
+                    rows += batch.size();
+                } else if (failed.isDone()) {
+                    failed.join();
+                } else if (done.isDone() && queue.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting patients");
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } finally {
+            // Also stops this export's readers still blocked on a full queue after the writer failed, and drops
+            // the ones not started yet; the pool itself is shared with the other exports
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        ExportResult result = new ExportResult(rows, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Exported {} patients as {} in {} ms ({} rows/s)", result.rows(), format,
+                result.elapsed().toMillis(), result.rowsPerSecond());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.shutdownNow();
+    }
+
+    private PatientWriter openWriter(ExportFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new PatientCsvWriter(out);
+            case PARQUET -> new PatientParquetWriter(out, parquetCompression, parquetRowGroupBytes);
+        };
+    }
+
+    private void read(int shard, KeyRange range, BlockingQueue<List<Patient>> queue) {
+        patientShardRouter.onShard(shard, () -> {
+            try (Connection connection = dataSource.getConnection()) {
+                // Postgres only streams through a cursor inside a transaction; otherwise it buffers the result
+                connection.setReadOnly(true);
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        range.upper() == null ? SELECT : SELECT_BOUNDED,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    statement.setFetchSize(fetchSize);
+                    statement.setObject(1, range.lower());
+                    if (range.upper() != null) {
+                        statement.setObject(2, range.upper());
+                    }
+                    readBatches(statement, queue);
+                }
+                connection.commit();
+                return null;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Reading patients from " + range.lower() + " on shard " + shard
+                        + " failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading patients", e);
+            }
+        });
+    }
+
+    private void readBatches(PreparedStatement statement, BlockingQueue<List<Patient>> queue)
+            throws SQLException, InterruptedException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            List<Patient> batch = new ArrayList<>(fetchSize);
+            while (resultSet.next()) {
+                batch.add(new Patient(
+                        resultSet.getObject(1, UUID.class),
+                        resultSet.getString(2),
+                        resultSet.getString(3),
+                        resultSet.getString(4),
+                        resultSet.getObject(5, LocalDate.class),
+                        resultSet.getObject(6, LocalDate.class)));
+                if (batch.size() == fetchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(fetchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        }
+    }
+}
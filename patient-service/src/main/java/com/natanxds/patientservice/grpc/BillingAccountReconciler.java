@@ -0,0 +1,57 @@
+package com.natanxds.patientservice.grpc;
+
+import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.model.PendingBillingAccount;
+import com.natanxds.patientservice.repository.PendingBillingAccountRepository;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+
+@Service
+public class BillingAccountReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            BillingAccountReconciler.class);
+    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final PendingBillingAccountRepository pendingBillingAccountRepository;
+
+    public BillingAccountReconciler(BillingServiceGrpcClient billingServiceGrpcClient,
+                                    PendingBillingAccountRepository pendingBillingAccountRepository) {
+        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.pendingBillingAccountRepository = pendingBillingAccountRepository;
+    }
+
+    // Any failure once the patient is committed: open breaker, full bulkhead, deadline, UNAVAILABLE or a server error
+    public void enqueue(Patient patient, Throwable failure) {
+        log.warn("Billing account for patient {} failed, queueing it: {}",
+                patient.getId(), Status.fromThrowable(failure));
+        pendingBillingAccountRepository.save(new PendingBillingAccount(patient.getId(),
+                patient.getName(), patient.getEmail(), Instant.now(), 0));
+    }
+
+    @Scheduled(fixedDelayString = "${billing.reconciliation.interval-ms:30000}")
+    public void reconcile() {
+        for (PendingBillingAccount pending : pendingBillingAccountRepository.findTop100ByOrderByQueuedAtAsc()) {
+            if (!billingServiceGrpcClient.isAvailable()) {
+                return;
+            }
+
+            try {
+                billingServiceGrpcClient.createBillingAccount(pending.getPatientId().toString(),
+                        pending.getName(), pending.getEmail());
+                pendingBillingAccountRepository.delete(pending);
+            } catch (CompletionException e) {
+                log.warn("Retry of billing account for patient {} failed: {}",
+                        pending.getPatientId(), e.getCause().getMessage());
+                pending.setAttempts(pending.getAttempts() + 1);
+                pendingBillingAccountRepository.save(pending);
+                return;
+            }
+        }
+    }
+}
@@ -1,44 +1,216 @@
 package com.natanxds.patientservice.grpc;
 
+import billing.AccountRange;
+import billing.AccountRangesDigest;
+import billing.AccountRangesRequest;
+import billing.BillingAccountChunk;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import lombok.extern.slf4j.Slf4j;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Service
 public class BillingServiceGrpcClient {
 
     private static final Logger log = LoggerFactory.getLogger(
             BillingServiceGrpcClient.class);
-    private final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<BillingServiceGrpc.BillingServiceFutureStub> futureStubs = new ArrayList<>();
+    private final List<BillingServiceGrpc.BillingServiceBlockingStub> blockingStubs = new ArrayList<>();
+    private final AtomicInteger nextStub = new AtomicInteger();
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final long deadlineMs;
+    private final long bulkDeadlineMs;
 
     public BillingServiceGrpcClient(
             @Value("${billing.service.address}") String serverAddress,
-            @Value("${billing.service.grpc.port}") int serverPort) {
+            @Value("${billing.service.grpc.port}") int serverPort,
+            @Value("${billing.service.grpc.deadline-ms:2000}") long deadlineMs,
+            @Value("${billing.service.grpc.bulk-deadline-ms:30000}") long bulkDeadlineMs,
+            @Value("${billing.service.grpc.keepalive-time-seconds:30}") long keepAliveTimeSeconds,
+            @Value("${billing.service.grpc.keepalive-timeout-seconds:10}") long keepAliveTimeoutSeconds,
+            @Value("${billing.service.grpc.max-attempts:3}") int maxAttempts,
+            @Value("${billing.service.grpc.hedging.enabled:false}") boolean hedgingEnabled,
+            @Value("${billing.service.grpc.hedging.delay-ms:100}") long hedgingDelayMs,
+            @Value("${billing.service.grpc.load-balancing-policy:round_robin}") String loadBalancingPolicy,
+            @Value("${billing.service.grpc.channels:1}") int channelCount,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry) {
 
-        log.info("Connecting to Billing Service GRPC service at {}:{}",
-                serverAddress, serverPort);
+        log.info("Connecting to Billing Service GRPC service at {}:{} using {} over {} channel(s)",
+                serverAddress, serverPort, loadBalancingPolicy, channelCount);
 
-        ManagedChannel channel = ManagedChannelBuilder.forAddress(serverAddress,
-                serverPort).usePlaintext().build();
+        // dns:/// resolves every A record (e.g. each task registered in Cloud Map) instead of pinning one
+        Map<String, Object> serviceConfig = serviceConfig(maxAttempts, hedgingEnabled,
+                hedgingDelayMs, loadBalancingPolicy);
+        for (int i = 0; i < channelCount; i++) {
+            ManagedChannel channel = ManagedChannelBuilder
+                    .forTarget("dns:///" + serverAddress + ":" + serverPort)
+                    .usePlaintext()
+                    .keepAliveTime(keepAliveTimeSeconds, TimeUnit.SECONDS)
+                    .keepAliveTimeout(keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                    .keepAliveWithoutCalls(true)
+                    .defaultServiceConfig(serviceConfig)
+                    .enableRetry()
+                    .build();
+            channels.add(channel);
+            futureStubs.add(BillingServiceGrpc.newFutureStub(channel));
+            blockingStubs.add(BillingServiceGrpc.newBlockingStub(channel));
+        }
 
-        blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("billing");
+        this.bulkhead = bulkheadRegistry.bulkhead("billing");
+        this.deadlineMs = deadlineMs;
+        this.bulkDeadlineMs = bulkDeadlineMs;
     }
 
     public BillingResponse createBillingAccount(String patientId, String name,
                                                 String email) {
+        return createBillingAccountAsync(patientId, name, email).join();
+    }
 
+    public CompletableFuture<BillingResponse> createBillingAccountAsync(String patientId,
+                                                                       String name,
+                                                                       String email) {
         BillingRequest request = BillingRequest.newBuilder().setPatientId(patientId)
                 .setName(name).setEmail(email).build();
 
-        BillingResponse response = blockingStub.creatingBillingAccount(request);
-        log.info("Received response from billing service via GRPC: {}", response);
-        return response;
+        return Bulkhead.decorateCompletionStage(bulkhead,
+                        CircuitBreaker.decorateCompletionStage(circuitBreaker,
+                                () -> call(request)))
+                .get()
+                .toCompletableFuture();
+    }
+
+    // Reconciliation calls: through the circuit breaker but not the bulkhead, which is sized for patient
+    // creation, and with the longer bulk deadline
+    public AccountRangesDigest digestBillingAccounts(List<AccountRange> ranges) {
+        AccountRangesRequest request = AccountRangesRequest.newBuilder().addAllRanges(ranges).build();
+        return circuitBreaker.executeSupplier(() -> blockingStub().digestBillingAccounts(request));
+    }
+
+    // Lazily streamed; the returned iterator throws StatusRuntimeException if the call fails midway
+    public Iterator<BillingAccountChunk> listBillingAccounts(AccountRange range) {
+        return circuitBreaker.executeSupplier(() -> blockingStub().listBillingAccounts(range));
+    }
+
+    public BillingBatchResponse createBillingAccounts(List<BillingRequest> accounts) {
+        BillingBatchRequest request = BillingBatchRequest.newBuilder().addAllAccounts(accounts).build();
+        return circuitBreaker.executeSupplier(() -> blockingStub().createBillingAccounts(request));
+    }
+
+    public boolean isAvailable() {
+        return circuitBreaker.getState() != CircuitBreaker.State.OPEN
+                && circuitBreaker.getState() != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    // One grpc.health.v1 round trip per channel: resolves and connects every channel without creating anything
+    public boolean checkHealth() {
+        HealthCheckRequest request = HealthCheckRequest.newBuilder()
+                .setService(BillingServiceGrpc.SERVICE_NAME).build();
+        boolean serving = true;
+        for (ManagedChannel channel : channels) {
+            HealthCheckResponse response = HealthGrpc.newBlockingStub(channel)
+                    .withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                    .check(request);
+            serving &= response.getStatus() == HealthCheckResponse.ServingStatus.SERVING;
+        }
+        return serving;
+    }
+
+    private CompletableFuture<BillingResponse> call(BillingRequest request) {
+        CompletableFuture<BillingResponse> result = new CompletableFuture<>();
+        BillingServiceGrpc.BillingServiceFutureStub futureStub = futureStubs.get(
+                Math.floorMod(nextStub.getAndIncrement(), futureStubs.size()));
+        ListenableFuture<BillingResponse> call = futureStub
+                .withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                .creatingBillingAccount(request);
+
+        Futures.addCallback(call, new FutureCallback<>() {
+            @Override
+            public void onSuccess(BillingResponse response) {
+                log.debug("Billing account {} created for patient {}", response.getAccountId(), request.getPatientId());
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Billing service call failed for patient {}: {}",
+                        request.getPatientId(), Status.fromThrowable(t));
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return result;
+    }
+
+    private BillingServiceGrpc.BillingServiceBlockingStub blockingStub() {
+        return blockingStubs.get(Math.floorMod(nextStub.getAndIncrement(), blockingStubs.size()))
+                .withDeadlineAfter(bulkDeadlineMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        channels.forEach(ManagedChannel::shutdown);
+        for (ManagedChannel channel : channels) {
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // Retries and hedging are mutually exclusive per method in the gRPC service config.
+    // Hedging is opt-in since it may send the same account creation more than once.
+    private static Map<String, Object> serviceConfig(int maxAttempts, boolean hedgingEnabled,
+                                                     long hedgingDelayMs,
+                                                     String loadBalancingPolicy) {
+        Map<String, Object> policy = hedgingEnabled
+                ? Map.of("hedgingPolicy", Map.of(
+                        "maxAttempts", (double) maxAttempts,
+                        "hedgingDelay", (hedgingDelayMs / 1000.0) + "s",
+                        "nonFatalStatusCodes", List.of("UNAVAILABLE")))
+                : Map.of("retryPolicy", Map.of(
+                        "maxAttempts", (double) maxAttempts,
+                        "initialBackoff", "0.1s",
+                        "maxBackoff", "1s",
+                        "backoffMultiplier", 2.0,
+                        "retryableStatusCodes", List.of("UNAVAILABLE")));
+
+        Map<String, Object> methodConfig = new HashMap<>(policy);
+        methodConfig.put("name", List.of(Map.of("service", BillingServiceGrpc.SERVICE_NAME)));
+
+        // Subchannels failing the grpc.health.v1 check are taken out of rotation (needs grpc-services)
+        return Map.of(
+                "loadBalancingConfig", List.of(Map.of(loadBalancingPolicy, Map.of())),
+                "healthCheckConfig", Map.of("serviceName", BillingServiceGrpc.SERVICE_NAME),
+                "methodConfig", List.of(methodConfig));
     }
-}
\ No newline at end of file
+}
@@ -1,37 +1,239 @@
 package com.natanxds.patientservice.kafka;
 
+import com.natanxds.patientservice.mapper.PatientMapper;
 import com.natanxds.patientservice.model.Patient;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import patient.events.PatientEvent;
+import patient.events.PatientState;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class KafkaProducer {
 
+    // Events are keyed by patient id so a patient's events, and any duplicates of them, share a partition
+    static final String TOPIC = "patient";
+
+    // Compacted: the latest PatientState per patient id, so consumers can rebuild a full view from it
+    static final String SNAPSHOT_TOPIC = "patient-snapshot";
+
+    // Snapshots and tombstones carry the patient's updated_at_ms here (8 bytes, big-endian), so a consumer
+    // can drop a record older than the one it already holds for the key
+    static final String VERSION_HEADER = "updated-at-ms";
+
     private static final Logger log = LoggerFactory.getLogger(
             KafkaProducer.class);
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaSpillLog kafkaSpillLog;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    // Keyed by topic and record key, present while a send for that key is in flight
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Send callbacks run on the producer's network thread; spilling there would stall every other send
+    private final ExecutorService spillExecutor = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+            .name("kafka-spill").factory());
 
-    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate) {
+    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate,
+                         KafkaSpillLog kafkaSpillLog,
+                         CircuitBreakerRegistry circuitBreakerRegistry,
+                         BulkheadRegistry bulkheadRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.kafkaSpillLog = kafkaSpillLog;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("kafka");
+        this.bulkhead = bulkheadRegistry.bulkhead("kafka");
     }
 
     public void sendEvent(Patient patient) {
-        PatientEvent event = PatientEvent.newBuilder()
+        PatientEvent event = patientEvent(patient);
+        send(new SpilledRecord(TOPIC, event.getPatientId(), event.toByteArray(), SpilledRecord.NO_VERSION),
+                "PatientCreated event");
+    }
+
+    public void publishSnapshot(Patient patient) {
+        PatientState state = patientState(patient);
+        send(new SpilledRecord(SNAPSHOT_TOPIC, state.getPatientId(), state.toByteArray(), state.getUpdatedAtMs()),
+                "patient snapshot");
+    }
+
+    // Loads topic metadata and serializes a sample event and snapshot; nothing is sent
+    public void warmUp(Patient sample) {
+        kafkaTemplate.partitionsFor(TOPIC);
+        kafkaTemplate.partitionsFor(SNAPSHOT_TOPIC);
+        patientEvent(sample).toByteArray();
+        patientState(sample).toByteArray();
+    }
+
+    private static PatientEvent patientEvent(Patient patient) {
+        return PatientEvent.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
                 .setPatientId(patient.getId().toString())
                 .setName(patient.getName())
                 .setEmail(patient.getEmail())
                 .setEventType("PATIENT_CREATED")
+                .setAddress(patient.getAddress())
+                .setDateOfBirth(PatientMapper.formatDate(patient.getDateOfBirth()))
+                .setRegisteredDate(PatientMapper.formatDate(patient.getRegisteredDate()))
+                .build();
+    }
+
+    static PatientState patientState(Patient patient) {
+        return patientState(patient, System.currentTimeMillis());
+    }
+
+    static PatientState patientState(Patient patient, long updatedAtMs) {
+        return PatientState.newBuilder()
+                .setPatientId(patient.getId().toString())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .setAddress(patient.getAddress())
+                .setDateOfBirth(PatientMapper.formatDate(patient.getDateOfBirth()))
+                .setRegisteredDate(PatientMapper.formatDate(patient.getRegisteredDate()))
+                .setUpdatedAtMs(updatedAtMs)
                 .build();
+    }
 
+    // Compaction drops every earlier snapshot of the patient, and later the tombstone itself
+    public void publishTombstone(UUID patientId) {
+        send(new SpilledRecord(SNAPSHOT_TOPIC, patientId.toString(), null, System.currentTimeMillis()),
+                "patient tombstone");
+    }
+
+    /**
+     * Publishes tombstones for patients removed in bulk and waits until Kafka has acknowledged every one.
+     * Bypasses the request-path bulkhead and the spill log: the caller keeps its rows until this returns,
+     * and retries the batch if it throws. Refuses while spilled records are pending, as they go first.
+     */
+    public void publishTombstones(List<UUID> patientIds, long timeoutMs) {
+        if (!kafkaSpillLog.isEmpty()) {
+            throw new IllegalStateException("Spilled Kafka records are still pending");
+        }
+        long version = System.currentTimeMillis();
         try {
-            log.info("Sending event to Kafka");
-            kafkaTemplate.send("patient", event.toByteArray());
+            CompletableFuture.allOf(patientIds.stream()
+                            .map(id -> kafkaTemplate.send(new SpilledRecord(SNAPSHOT_TOPIC, id.toString(), null,
+                                    version).toProducerRecord()))
+                            .toArray(CompletableFuture[]::new))
+                    .get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted publishing patient tombstones", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not publish patient tombstones", e);
+        }
+    }
+
+    /*
+     * Records for one key must reach Kafka in the order they were sent: on the compacted snapshot topic the
+     * last record is the key's value. A send that fails after newer records for its key went out is
+     * spilled and replayed later, so on failure the key's newest record is spilled again behind it and
+     * replay ends on the newest state. The spill check in send and the spills in onSendFailed run under
+     * the key's map entry, so a record sent concurrently is either seen as the newest or finds the log
+     * non-empty and queues behind the failed one. Failures reported by the producer are spilled on
+     * spillExecutor; until then the key's entry stays pending, so that still holds.
+     */
+    private void send(SpilledRecord record, String description) {
+        String slot = record.topic() + '/' + record.key();
+        boolean[] spilled = {false};
+        inFlight.compute(slot, (ignored, current) -> {
+            // Records already spilled must reach Kafka first, so new ones queue behind them
+            if (!kafkaSpillLog.isEmpty()) {
+                spill(record, description);
+                spilled[0] = true;
+                if (current != null) {
+                    current.latest = record;
+                }
+                return current;
+            }
+            InFlight entry = current == null ? new InFlight() : current;
+            entry.latest = record;
+            entry.pending++;
+            return entry;
+        });
+        if (spilled[0]) {
+            return;
+        }
+
+        try {
+            log.debug("Sending {} to Kafka", description);
+            Bulkhead.decorateCompletionStage(bulkhead,
+                            CircuitBreaker.decorateCompletionStage(circuitBreaker,
+                                    () -> kafkaTemplate.send(record.toProducerRecord())))
+                    .get()
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("Error sending {}: {}", description, e.getMessage());
+                            spillLater(slot, record, description);
+                        } else {
+                            inFlight.computeIfPresent(slot, (ignored, entry) -> --entry.pending == 0 ? null : entry);
+                        }
+                    });
         } catch (Exception e) {
-            log.info("Error while sending event to Kafka");
-            log.error("Error sending PatientCreated event: {}", event);
+            // Open breaker, full bulkhead, or max.block.ms exceeded on a full buffer or missing metadata
+            log.warn("Kafka unavailable, spilling {}: {}", description, e.getMessage());
+            onSendFailed(slot, record, description);
         }
     }
+
+    // Spills already queued are written before the log is closed
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        spillExecutor.shutdown();
+        if (!spillExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Kafka spills still pending at shutdown");
+        }
+    }
+
+    private void spillLater(String slot, SpilledRecord record, String description) {
+        try {
+            spillExecutor.execute(() -> onSendFailed(slot, record, description));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the producer is flushing its last sends
+            onSendFailed(slot, record, description);
+        }
+    }
+
+    private void onSendFailed(String slot, SpilledRecord record, String description) {
+        inFlight.compute(slot, (ignored, entry) -> {
+            spill(record, description);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.latest != record) {
+                spill(entry.latest, description);
+            }
+            return --entry.pending == 0 ? null : entry;
+        });
+    }
+
+    private void spill(SpilledRecord record, String description) {
+        try {
+            kafkaSpillLog.append(record.encode());
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not spill {}, record lost: {}", description, e.getMessage());
+        }
+    }
+
+    private static final class InFlight {
+        SpilledRecord latest;
+        int pending;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.natanxds.patientservice.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class KafkaSpillDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            KafkaSpillDrainer.class);
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaSpillLog kafkaSpillLog;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+
+    public KafkaSpillDrainer(KafkaTemplate<String, byte[]> kafkaTemplate,
+                             KafkaSpillLog kafkaSpillLog,
+                             @Value("${kafka.spill.drain-batch-size:500}") int batchSize,
+                             @Value("${kafka.spill.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaSpillLog = kafkaSpillLog;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    // Replays in log order; a batch is committed only once the broker has acknowledged all of it
+    @Scheduled(fixedDelayString = "${kafka.spill.drain-interval-ms:1000}")
+    public void drain() {
+        kafkaSpillLog.force();
+        while (!kafkaSpillLog.isEmpty()) {
+            KafkaSpillLog.Batch batch = kafkaSpillLog.peek(batchSize);
+            try {
+                CompletableFuture.allOf(batch.records().stream()
+                                .map(this::send)
+                                .toArray(CompletableFuture[]::new))
+                        .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+                kafkaSpillLog.commit(batch.next());
+                log.info("Replayed {} spilled events to Kafka", batch.records().size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Kafka still unavailable, keeping spilled events: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private CompletableFuture<?> send(byte[] payload) {
+        try {
+            return kafkaTemplate.send(SpilledRecord.decode(payload).toProducerRecord());
+        } catch (InvalidProtocolBufferException e) {
+            return kafkaTemplate.send(KafkaProducer.TOPIC, null, payload);
+        }
+    }
+}
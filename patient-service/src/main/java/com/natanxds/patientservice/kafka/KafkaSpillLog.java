@@ -0,0 +1,299 @@
+package com.natanxds.patientservice.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of events that could not be handed to the Kafka producer, kept in memory-mapped
+ * segment files so they survive a restart.
+ * Each record is {@code [int length][int crc32c][payload]}. The length is written last, so a record
+ * interrupted by a crash fails the scan on startup and the log is truncated there. The drained position
+ * is kept in a checkpoint file; replay after a crash is at-least-once.
+ * <p>
+ * Instances may share {@code kafka.spill.directory}, a network volume that outlives its tasks. Each one
+ * holds a file lock on its own {@code slot-N} subdirectory while it runs, preferring an unlocked slot that
+ * still has segment files, so a replacement task adopts and drains what a stopped one left behind. A slot
+ * closed empty is cleared, so only slots with undelivered records (or a crashed owner) are adopted first.
+ */
+@Component
+public class KafkaSpillLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            KafkaSpillLog.class);
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String SLOT_PREFIX = "slot-";
+    private static final String LOCK = "lock";
+
+    private final Path directory;
+    private final FileLock slotLock;
+    private final int segmentBytes;
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private Position read;
+    private volatile boolean empty;
+
+    public KafkaSpillLog(@Value("${kafka.spill.directory}") String directory,
+                         @Value("${kafka.spill.segment-bytes:67108864}") int segmentBytes) {
+        this.segmentBytes = segmentBytes;
+        try {
+            Path root = Path.of(directory);
+            Files.createDirectories(root);
+            Slot slot = lockSlot(root);
+            this.directory = slot.directory();
+            this.slotLock = slot.lock();
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open Kafka spill log in " + directory, e);
+        }
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public synchronized void append(byte[] payload) throws IOException {
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("Event of " + payload.length + " bytes exceeds the spill segment size");
+        }
+        if (active.end + size > segmentBytes) {
+            active = openSegment(active.id + 1);
+        }
+
+        int offset = active.end;
+        active.buffer.put(offset + HEADER_BYTES, payload);
+        active.buffer.putInt(offset + 4, checksum(ByteBuffer.wrap(payload)));
+        active.buffer.putInt(offset, payload.length);
+        active.end = offset + size;
+        empty = false;
+    }
+
+    /**
+     * Returns up to {@code max} records from the drained position without consuming them.
+     */
+    public synchronized Batch peek(int max) {
+        List<byte[]> records = new ArrayList<>(Math.min(max, 256));
+        Position position = read;
+        while (records.size() < max) {
+            Segment segment = segments.get(position.segment());
+            if (position.offset() >= segment.end) {
+                Long next = segments.higherKey(segment.id);
+                if (next == null) {
+                    break;
+                }
+                position = new Position(next, 0);
+                continue;
+            }
+            int length = segment.buffer.getInt(position.offset());
+            byte[] payload = new byte[length];
+            segment.buffer.get(position.offset() + HEADER_BYTES, payload);
+            records.add(payload);
+            position = new Position(segment.id, position.offset() + HEADER_BYTES + length);
+        }
+        return new Batch(records, position);
+    }
+
+    /**
+     * Marks everything before {@code next} as delivered and deletes segments that are fully drained.
+     */
+    public synchronized void commit(Position next) throws IOException {
+        read = next;
+        Map<Long, Segment> drained = segments.headMap(next.segment());
+        for (Segment segment : drained.values()) {
+            Files.deleteIfExists(segment.path);
+        }
+        drained.clear();
+        writeCheckpoint();
+        empty = read.segment() == active.id && read.offset() >= active.end;
+    }
+
+    public synchronized void force() {
+        active.buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        try {
+            if (empty) {
+                for (Segment segment : segments.values()) {
+                    Files.deleteIfExists(segment.path);
+                }
+                Files.deleteIfExists(directory.resolve(CHECKPOINT));
+            }
+            slotLock.channel().close();
+        } catch (IOException e) {
+            log.warn("Could not release Kafka spill slot {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static Slot lockSlot(Path root) throws IOException {
+        List<Path> withSegments;
+        try (Stream<Path> files = Files.list(root)) {
+            withSegments = files.filter(path -> path.getFileName().toString().startsWith(SLOT_PREFIX))
+                    .filter(KafkaSpillLog::hasSegments)
+                    .sorted()
+                    .toList();
+        }
+        for (Path slot : withSegments) {
+            FileLock lock = tryLock(slot);
+            if (lock != null) {
+                return new Slot(slot, lock);
+            }
+        }
+        for (int i = 0; ; i++) {
+            Path slot = root.resolve(SLOT_PREFIX + i);
+            Files.createDirectories(slot);
+            FileLock lock = tryLock(slot);
+            if (lock != null) {
+                return new Slot(slot, lock);
+            }
+        }
+    }
+
+    private static boolean hasSegments(Path slot) {
+        try (Stream<Path> files = Files.list(slot)) {
+            return files.anyMatch(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Held until close, or until the process dies and the OS (or the NFS lease) releases it
+    private static FileLock tryLock(Path slot) throws IOException {
+        FileChannel channel = FileChannel.open(slot.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another spill log in this JVM
+        }
+        channel.close();
+        return null;
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                String name = path.getFileName().toString();
+                Segment segment = map(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), path);
+                segment.end = scan(segment);
+                segments.put(segment.id, segment);
+            }
+        }
+        // Appends never resume inside a recovered segment, whose tail may hold a torn record
+        active = openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+
+        read = readCheckpoint();
+        if (read == null || !segments.containsKey(read.segment())) {
+            read = new Position(segments.firstKey(), 0);
+        }
+        Batch pending = peek(1);
+        commit(pending.records().isEmpty() ? pending.next() : read);
+
+        if (!empty) {
+            log.warn("Recovered Kafka spill log {} with undelivered events in {} segment(s)", directory,
+                    segments.size());
+        }
+    }
+
+    private int scan(Segment segment) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            if (checksum(segment.buffer.slice(offset + HEADER_BYTES, length)) != segment.buffer.getInt(offset + 4)) {
+                log.warn("Checksum mismatch in Kafka spill segment {} at offset {}, truncating", segment.path, offset);
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Segment segment = map(id, directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment map(long id, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String[] fields = Files.readString(checkpoint).trim().split(" ");
+        return new Position(Long.parseLong(fields[0]), Integer.parseInt(fields[1]));
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temp, read.segment() + " " + read.offset(), StandardCharsets.US_ASCII);
+        Files.move(temp, directory.resolve(CHECKPOINT),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private record Slot(Path directory, FileLock lock) {
+    }
+
+    public record Position(long segment, int offset) {
+    }
+
+    public record Batch(List<byte[]> records, Position next) {
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int end;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.natanxds.patientservice.kafka;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    @Bean
+    public NewTopic patientSnapshotTopic(@Value("${kafka.snapshot.partitions:6}") int partitions,
+                                         @Value("${kafka.snapshot.replicas:1}") int replicas,
+                                         @Value("${kafka.snapshot.delete-retention-ms:86400000}") long deleteRetentionMs) {
+        return TopicBuilder.name(KafkaProducer.SNAPSHOT_TOPIC)
+                .partitions(partitions)
+                .replicas(replicas)
+                .compact()
+                // A consumer restoring from scratch must finish within this window to see a delete's tombstone
+                .config(TopicConfig.DELETE_RETENTION_MS_CONFIG, String.valueOf(deleteRetentionMs))
+                .config(TopicConfig.MIN_CLEANABLE_DIRTY_RATIO_CONFIG, "0.1")
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.natanxds.patientservice.kafka;
+
+import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.repository.PatientRepository;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Publishes a snapshot of every stored patient, for seeding the compacted topic from a database that
+ * predates it. Re-running it is harmless: compaction keeps only the newest record per patient.
+ * Each snapshot is versioned with the time its shard's read started, not the time it is sent: a patient
+ * updated or deleted while the backfill streams has a later version, so versioned consumers keep the live
+ * record even when the backfilled one lands after it.
+ * Records go straight to the producer, bypassing the request-path bulkhead that a bulk load would
+ * saturate; the producer is flushed every {@code FLUSH_EVERY} records to bound buffered memory.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.snapshot.backfill-on-startup", havingValue = "true")
+public class PatientSnapshotBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientSnapshotBackfill.class);
+    private static final int FLUSH_EVERY = 1000;
+    private final PatientRepository patientRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final PatientShardRouter patientShardRouter;
+    private final EntityManager entityManager;
+
+    public PatientSnapshotBackfill(PatientRepository patientRepository,
+                                   KafkaTemplate<String, byte[]> kafkaTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   PatientShardRouter patientShardRouter,
+                                   EntityManager entityManager) {
+        this.patientRepository = patientRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.patientShardRouter = patientShardRouter;
+        this.entityManager = entityManager;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            backfill();
+        } catch (RuntimeException e) {
+            // A failed backfill must not take the service down; it can be re-run on the next start
+            log.warn("Patient snapshot backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private void backfill() {
+        long published = 0;
+        AtomicLong failed = new AtomicLong();
+        for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+            published += patientShardRouter.onShard(shard, () -> readOnlyTransactionTemplate.execute(status -> {
+                long readStartedAtMs = System.currentTimeMillis();
+                long count = 0;
+                try (Stream<Patient> patients = patientRepository.streamAll()) {
+                    for (Patient patient : (Iterable<Patient>) patients::iterator) {
+                        kafkaTemplate.send(new SpilledRecord(KafkaProducer.SNAPSHOT_TOPIC, patient.getId().toString(),
+                                        KafkaProducer.patientState(patient, readStartedAtMs).toByteArray(),
+                                        readStartedAtMs).toProducerRecord())
+                                .whenComplete((result, e) -> {
+                                    if (e != null) {
+                                        failed.incrementAndGet();
+                                    }
+                                });
+                        entityManager.detach(patient);
+                        if (++count % FLUSH_EVERY == 0) {
+                            kafkaTemplate.flush();
+                        }
+                    }
+                }
+                kafkaTemplate.flush();
+                return count;
+            }));
+        }
+        if (failed.get() > 0) {
+            log.warn("Backfilled {} patient snapshots, {} failed; re-run the backfill once Kafka is healthy",
+                    published, failed.get());
+        } else {
+            log.info("Backfilled {} patient snapshots", published);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.natanxds.patientservice.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import patient.events.PatientEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Kafka record as stored in the {@link KafkaSpillLog}: {@code [0x01][version][topic][key][value]}, the
+ * version a long ({@link #NO_VERSION} for records without one) and the other parts length-prefixed, with a
+ * value length of -1 for a tombstone. {@code 0x00} entries predate the version and lack it. Entries written
+ * before records carried a topic are bare {@link PatientEvent}s; a protobuf message never starts with a
+ * zero or one byte (field number 0 is invalid), so the formats cannot be confused.
+ */
+record SpilledRecord(String topic, String key, byte[] value, long version) {
+
+    static final long NO_VERSION = -1;
+
+    private static final byte MARKER = 0;
+    private static final byte VERSIONED_MARKER = 1;
+
+    // The version travels in a header rather than the value, so tombstones carry one too
+    ProducerRecord<String, byte[]> toProducerRecord() {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, value);
+        if (version != NO_VERSION) {
+            record.headers().add(KafkaProducer.VERSION_HEADER,
+                    ByteBuffer.allocate(Long.BYTES).putLong(version).array());
+        }
+        return record;
+    }
+
+    byte[] encode() {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 2 + topicBytes.length + 2 + keyBytes.length + 4
+                + (value == null ? 0 : value.length));
+        buffer.put(VERSIONED_MARKER).putLong(version);
+        buffer.putShort((short) topicBytes.length).put(topicBytes);
+        buffer.putShort((short) keyBytes.length).put(keyBytes);
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+        return buffer.array();
+    }
+
+    static SpilledRecord decode(byte[] payload) throws InvalidProtocolBufferException {
+        if (payload.length == 0 || (payload[0] != MARKER && payload[0] != VERSIONED_MARKER)) {
+            return new SpilledRecord(KafkaProducer.TOPIC, PatientEvent.parseFrom(payload).getPatientId(), payload,
+                    NO_VERSION);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        long version = payload[0] == VERSIONED_MARKER ? buffer.getLong() : NO_VERSION;
+        String topic = readString(buffer);
+        String key = readString(buffer);
+        int length = buffer.getInt();
+        byte[] value = null;
+        if (length >= 0) {
+            value = new byte[length];
+            buffer.get(value);
+        }
+        return new SpilledRecord(topic, key, value, version);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package com.natanxds.patientservice.limiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+@ConditionalOnProperty(name = "patient.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        GradientConcurrencyLimiter readLimiter = limiter("read", properties.getRead(), properties, meterRegistry);
+        GradientConcurrencyLimiter writeLimiter = limiter("write", properties.getWrite(), properties, meterRegistry);
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(readLimiter, writeLimiter, properties.getRetryAfterSeconds()));
+        registration.addUrlPatterns("/api/v1/patients", "/api/v1/patients/*");
+        // After the HTTP observation filter, so rejections still show up in http.server.requests
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    private static GradientConcurrencyLimiter limiter(String requestClass, ConcurrencyLimitProperties.Limits limits,
+                                                      ConcurrencyLimitProperties properties,
+                                                      MeterRegistry meterRegistry) {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(limits.getInitialLimit(),
+                limits.getMinLimit(), limits.getMaxLimit(), properties.getRttTolerance(), properties.getSmoothing(),
+                TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs()), properties.getMinWindowSamples(),
+                properties.getProbeWindows());
+
+        Gauge.builder("patient.concurrency.limit", limiter, GradientConcurrencyLimiter::getLimit)
+                .tag("class", requestClass)
+                .register(meterRegistry);
+        Gauge.builder("patient.concurrency.in.flight", limiter, GradientConcurrencyLimiter::getInFlight)
+                .tag("class", requestClass)
+                .register(meterRegistry);
+        Gauge.builder("patient.concurrency.no.load.rtt", limiter, GradientConcurrencyLimiter::getNoLoadRttSeconds)
+                .tag("class", requestClass)
+                .baseUnit("seconds")
+                .description("Latency without queueing that the limit is measured against")
+                .register(meterRegistry);
+        FunctionCounter.builder("patient.concurrency.rejected", limiter, GradientConcurrencyLimiter::getRejected)
+                .tag("class", requestClass)
+                .register(meterRegistry);
+        return limiter;
+    }
+}
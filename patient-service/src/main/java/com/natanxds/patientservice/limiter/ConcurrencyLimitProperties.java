@@ -0,0 +1,40 @@
+package com.natanxds.patientservice.limiter;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "patient.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    private Limits read = new Limits(40, 8, 128);
+
+    private Limits write = new Limits(16, 4, 64);
+
+    // Latency may rise this far above its long-term average before the limit shrinks
+    private double rttTolerance = 1.5;
+
+    private double smoothing = 0.2;
+
+    private long windowMs = 250;
+
+    private int minWindowSamples = 10;
+
+    // How often, in windows, the limit is halved to re-measure the no-load latency
+    private long probeWindows = 240;
+
+    private int retryAfterSeconds = 1;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+    }
+}
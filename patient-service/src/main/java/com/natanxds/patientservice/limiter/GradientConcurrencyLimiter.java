@@ -0,0 +1,129 @@
+package com.natanxds.patientservice.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on requests in flight, after Netflix's gradient limit. Round-trip times are averaged per
+ * window; each window scales the limit by {@code tolerance * noLoadRtt / rtt} (capped to [0.5, 1]) and adds
+ * {@code sqrt(limit)} of headroom, so the limit grows while latency stays near the no-load RTT and shrinks
+ * as soon as requests queue. The no-load RTT is the fastest window seen. Sustained queueing would hide a
+ * slower but real baseline, so on the first window and every {@code probeWindows} windows after it the
+ * limit is halved and the no-load RTT measured again once the queue has drained. Windows in which fewer
+ * than half the permits were used say nothing about the limit and leave it unchanged.
+ */
+public class GradientConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final long probeWindows;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double noLoadRttNanos;
+    private long windows;
+    private long probeMeasuredAt = -1;
+    private long windowStart = System.nanoTime();
+    private long windowRttNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                                      double smoothing, long windowNanos, int minWindowSamples,
+                                      long probeWindows) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = windowNanos;
+        this.minWindowSamples = minWindowSamples;
+        this.probeWindows = probeWindows;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        sample(rttNanos, inFlightBefore);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public synchronized double getNoLoadRttSeconds() {
+        return noLoadRttNanos / 1e9;
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightBefore) {
+        windowRttNanos += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+
+        long now = System.nanoTime();
+        if (windowSamples < minWindowSamples || now - windowStart < windowNanos) {
+            return;
+        }
+        double shortRttNanos = (double) windowRttNanos / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowStart = now;
+        windowRttNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        update(shortRttNanos, maxInFlight);
+    }
+
+    private void update(double shortRttNanos, int maxInFlight) {
+        windows++;
+        if (windows == probeMeasuredAt || noLoadRttNanos == 0 || shortRttNanos < noLoadRttNanos) {
+            noLoadRttNanos = shortRttNanos;
+        }
+        // Also on the first window, which may have been measured under load already
+        if (windows % probeWindows == 1) {
+            // The next window drains the queue at the lower limit, the one after measures the baseline
+            probeMeasuredAt = windows + 2;
+            setLimit(estimatedLimit / 2);
+            return;
+        }
+
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * noLoadRttNanos / shortRttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        setLimit(estimatedLimit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    private void setLimit(double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
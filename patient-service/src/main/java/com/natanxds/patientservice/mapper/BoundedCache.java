@@ -0,0 +1,37 @@
+package com.natanxds.patientservice.mapper;
+
+import java.util.function.Function;
+
+/**
+ * Fixed-size, direct-mapped cache: each key has one slot, chosen by its hash, and a miss overwrites whatever
+ * the slot held. Memory stays bounded, recently used values replace stale ones, and lookups take no lock.
+ * Entries are immutable, so a racing reader sees either the old entry or the new one.
+ */
+final class BoundedCache<K, V> {
+
+    private record Entry<K, V>(K key, V value) {
+    }
+
+    private final Entry<K, V>[] slots;
+
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    BoundedCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = (Entry<K, V>[]) new Entry[size];
+        this.mask = size - 1;
+    }
+
+    V get(K key, Function<K, V> loader) {
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry<K, V> entry = slots[slot];
+        if (entry != null && entry.key().equals(key)) {
+            return entry.value();
+        }
+        V value = loader.apply(key);
+        slots[slot] = new Entry<>(key, value);
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+package com.natanxds.patientservice.mapper;
+
+import com.natanxds.patientservice.model.Patient;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams patients as RFC 4180 CSV with a header row. Text fields are quoted only when they contain a
+ * comma, quote or line break. Not thread-safe; use one instance per export.
+ */
+public class PatientCsvWriter implements PatientWriter {
+
+    private static final String HEADER = "id,name,email,address,date_of_birth,registered_date\r\n";
+
+    private final Writer writer;
+    private final char[] buffer = new char[36];
+
+    public PatientCsvWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.writer.write(HEADER);
+    }
+
+    @Override
+    public void write(Patient patient) throws IOException {
+        writer.write(buffer, 0, PatientJsonWriter.formatUuid(patient.getId(), buffer));
+        writer.write(',');
+        writeText(patient.getName());
+        writer.write(',');
+        writeText(patient.getEmail());
+        writer.write(',');
+        writeText(patient.getAddress());
+        writer.write(',');
+        writer.write(buffer, 0, PatientJsonWriter.formatDate(patient.getDateOfBirth(), buffer));
+        writer.write(',');
+        writer.write(buffer, 0, PatientJsonWriter.formatDate(patient.getRegisteredDate(), buffer));
+        writer.write("\r\n");
+    }
+
+    // Flushes but does not close: the caller owns the stream
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private void writeText(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
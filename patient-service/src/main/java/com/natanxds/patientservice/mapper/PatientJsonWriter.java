@@ -0,0 +1,103 @@
+package com.natanxds.patientservice.mapper;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.natanxds.patientservice.model.Patient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Streams patients as the JSON array {@code PatientResponseDTO} would produce, without a DTO or id/date
+ * Strings per row. Not thread-safe; use one instance per response.
+ */
+public class PatientJsonWriter implements PatientWriter {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString ADDRESS = new SerializedString("address");
+    private static final SerializedString DATE_OF_BIRTH = new SerializedString("dateOfBirth");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final JsonGenerator generator;
+    private final char[] buffer = new char[36];
+
+    public PatientJsonWriter(JsonFactory jsonFactory, OutputStream out) throws IOException {
+        this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        // The caller owns the stream (e.g. the servlet response)
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.writeStartArray();
+    }
+
+    @Override
+    public void write(Patient patient) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(buffer, 0, formatUuid(patient.getId(), buffer));
+        generator.writeFieldName(NAME);
+        generator.writeString(patient.getName());
+        generator.writeFieldName(EMAIL);
+        generator.writeString(patient.getEmail());
+        generator.writeFieldName(ADDRESS);
+        generator.writeString(patient.getAddress());
+        generator.writeFieldName(DATE_OF_BIRTH);
+        generator.writeString(buffer, 0, formatDate(patient.getDateOfBirth(), buffer));
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    static int formatUuid(UUID uuid, char[] out) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        hex(msb >>> 32, out, 0, 8);
+        out[8] = '-';
+        hex(msb >>> 16, out, 9, 4);
+        out[13] = '-';
+        hex(msb, out, 14, 4);
+        out[18] = '-';
+        hex(lsb >>> 48, out, 19, 4);
+        out[23] = '-';
+        hex(lsb, out, 24, 12);
+        return 36;
+    }
+
+    // ISO-8601 yyyy-MM-dd, matching LocalDate.toString(); other years need a sign or more digits, so they use it
+    static int formatDate(LocalDate date, char[] out) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            String formatted = date.toString();
+            formatted.getChars(0, formatted.length(), out, 0);
+            return formatted.length();
+        }
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        out[0] = (char) ('0' + year / 1000);
+        out[1] = (char) ('0' + year / 100 % 10);
+        out[2] = (char) ('0' + year / 10 % 10);
+        out[3] = (char) ('0' + year % 10);
+        out[4] = '-';
+        out[5] = (char) ('0' + month / 10);
+        out[6] = (char) ('0' + month % 10);
+        out[7] = '-';
+        out[8] = (char) ('0' + day / 10);
+        out[9] = (char) ('0' + day % 10);
+        return 10;
+    }
+
+    private static void hex(long value, char[] out, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
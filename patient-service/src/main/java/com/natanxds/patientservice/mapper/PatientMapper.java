@@ -5,17 +5,21 @@ import com.natanxds.patientservice.dto.PatientResponseDTO;
 import com.natanxds.patientservice.model.Patient;
 
 import java.time.LocalDate;
-import java.util.UUID;
 
 public class PatientMapper {
 
+    // Birth and registration dates have low cardinality, so parsed and formatted values are shared
+    private static final int DATE_CACHE_SIZE = 1 << 16;
+    private static final BoundedCache<String, LocalDate> PARSED_DATES = new BoundedCache<>(DATE_CACHE_SIZE);
+    private static final BoundedCache<LocalDate, String> FORMATTED_DATES = new BoundedCache<>(DATE_CACHE_SIZE);
+
     public static PatientResponseDTO toPatientResponseDTO(Patient patient) {
         return new PatientResponseDTO(
                 patient.getId().toString(),
                 patient.getName(),
                 patient.getEmail(),
                 patient.getAddress(),
-                patient.getDateOfBirth().toString()
+                formatDate(patient.getDateOfBirth())
         );
     }
 
@@ -25,9 +29,16 @@ public class PatientMapper {
         patient.setName(patientRequestDTO.getName());
         patient.setAddress(patientRequestDTO.getAddress());
         patient.setEmail(patientRequestDTO.getEmail());
-        patient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
-        patient.setRegisteredDate(LocalDate.parse(patientRequestDTO.getRegisteredDate()));
+        patient.setDateOfBirth(parseDate(patientRequestDTO.getDateOfBirth()));
+        patient.setRegisteredDate(parseDate(patientRequestDTO.getRegisteredDate()));
         return patient;
     }
 
+    public static LocalDate parseDate(String date) {
+        return PARSED_DATES.get(date, LocalDate::parse);
+    }
+
+    public static String formatDate(LocalDate date) {
+        return FORMATTED_DATES.get(date, LocalDate::toString);
+    }
 }
@@ -0,0 +1,127 @@
+package com.natanxds.patientservice.mapper;
+
+import com.natanxds.patientservice.model.Patient;
+import org.apache.parquet.column.ParquetProperties;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Types;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.BINARY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.INT32;
+
+/**
+ * Streams patients as a Parquet file with dictionary encoding and the given compression. Parquet only
+ * appends (the footer goes last), so the file can be written straight to a response; memory is bounded by
+ * one row group. Not thread-safe; use one instance per export.
+ */
+public class PatientParquetWriter implements PatientWriter {
+
+    private static final MessageType SCHEMA = Types.buildMessage()
+            .required(FIXED_LEN_BYTE_ARRAY).length(16).as(LogicalTypeAnnotation.uuidType()).named("id")
+            .required(BINARY).as(LogicalTypeAnnotation.stringType()).named("name")
+            .required(BINARY).as(LogicalTypeAnnotation.stringType()).named("email")
+            .required(BINARY).as(LogicalTypeAnnotation.stringType()).named("address")
+            .required(INT32).as(LogicalTypeAnnotation.dateType()).named("date_of_birth")
+            .required(INT32).as(LogicalTypeAnnotation.dateType()).named("registered_date")
+            .named("patient");
+
+    private final SimpleGroupFactory groups = new SimpleGroupFactory(SCHEMA);
+    private final ParquetWriter<Group> writer;
+
+    public PatientParquetWriter(OutputStream out, CompressionCodecName compression, long rowGroupBytes)
+            throws IOException {
+        this.writer = ExampleParquetWriter.builder(new StreamOutputFile(out))
+                .withType(SCHEMA)
+                .withCompressionCodec(compression)
+                .withDictionaryEncoding(true)
+                .withRowGroupSize(rowGroupBytes)
+                .withWriterVersion(ParquetProperties.WriterVersion.PARQUET_2_0)
+                .build();
+    }
+
+    @Override
+    public void write(Patient patient) throws IOException {
+        ByteBuffer id = ByteBuffer.allocate(16)
+                .putLong(patient.getId().getMostSignificantBits())
+                .putLong(patient.getId().getLeastSignificantBits());
+        writer.write(groups.newGroup()
+                .append("id", Binary.fromConstantByteArray(id.array()))
+                .append("name", patient.getName())
+                .append("email", patient.getEmail())
+                .append("address", patient.getAddress())
+                .append("date_of_birth", (int) patient.getDateOfBirth().toEpochDay())
+                .append("registered_date", (int) patient.getRegisteredDate().toEpochDay()));
+    }
+
+    // Writes the last row group and the footer
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // An append-only target that tracks its own position; closing it only flushes the caller's stream
+    private record StreamOutputFile(OutputStream out) implements OutputFile {
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return new PositionOutputStream() {
+                private long position;
+
+                @Override
+                public long getPos() {
+                    return position;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    position += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            return create(blockSizeHint);
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.natanxds.patientservice.mapper;
+
+import com.natanxds.patientservice.model.Patient;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes patients one at a time in some output format; {@link #close()} finishes the format but leaves the
+ * underlying stream open.
+ */
+public interface PatientWriter extends Closeable {
+
+    void write(Patient patient) throws IOException;
+}
@@ -0,0 +1,29 @@
+package com.natanxds.patientservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    private String idempotencyKey;
+
+    @NotNull
+    private String requestHash;
+
+    // Null while the request that claimed the key is still running
+    @Column(length = 4096)
+    private String responseBody;
+
+    @NotNull
+    private Instant createdAt;
+
+}
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -15,25 +16,36 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Patient {
+    // Assigned in Java rather than by the database so the owning shard can be chosen before the insert
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
+    // Personal data stays out of toString, which ends up in logs
     @NotNull
+    @ToString.Exclude
     private String name;
 
     @NotNull
     @Email
-    @Column(unique = true)
+    @ToString.Exclude
     private String email;
 
     @NotNull
+    @ToString.Exclude
     private String address;
 
     @NotNull
+    @ToString.Exclude
     private LocalDate dateOfBirth;
 
     @NotNull
     private LocalDate registeredDate;
 
+    @PrePersist
+    void assignId() {
+        if (id == null) {
+            id = UUID.randomUUID();
+        }
+    }
+
 }
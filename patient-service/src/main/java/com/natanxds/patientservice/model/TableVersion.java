@@ -0,0 +1,25 @@
+package com.natanxds.patientservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TableVersion {
+    @Id
+    private String tableName;
+
+    private long version;
+
+    @NotNull
+    private Instant lastModified;
+
+}
@@ -0,0 +1,173 @@
+package com.natanxds.patientservice.partitioning;
+
+import com.natanxds.patientservice.kafka.KafkaProducer;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import com.natanxds.patientservice.sharding.ShardedEmailIndex;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves monthly patient partitions older than {@code retention-months} out of the database. A partition is
+ * first detached, so the hot table stops seeing it at once, then streamed with {@code COPY} into a gzipped
+ * CSV file and dropped only after the file is durable. Before the drop, the archived patients' email
+ * reservations are released and tombstones published, in batches of {@code release-batch-size}, so their
+ * addresses can be registered again and snapshot consumers forget them. Detached but not yet dropped tables
+ * are picked up again on the next run, so a crash in between loses nothing; every step is safe to repeat.
+ * Archive files carry the table's oid: a month archived again later (its rows having reached the default
+ * partition since) gets a new file instead of replacing the first one.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.partitioning.enabled", havingValue = "true")
+public class PatientPartitionArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientPartitionArchiver.class);
+    // Only one instance per database archives at a time
+    private static final long LOCK_KEY = 0x7061_7469_656e_7401L;
+    private static final String PARTITION_PATTERN = "^patient_p[0-9]{4}_[0-9]{2}$";
+
+    private final DataSource dataSource;
+    private final PatientShardRouter patientShardRouter;
+    private final ShardedEmailIndex emailIndex;
+    private final KafkaProducer kafkaProducer;
+    private final int retentionMonths;
+    private final Path archiveDirectory;
+    private final int releaseBatchSize;
+    private final long tombstoneTimeoutMs;
+
+    public PatientPartitionArchiver(DataSource dataSource,
+                                    PatientShardRouter patientShardRouter,
+                                    ShardedEmailIndex emailIndex,
+                                    KafkaProducer kafkaProducer,
+                                    @Value("${patient.partitioning.retention-months:24}") int retentionMonths,
+                                    @Value("${patient.partitioning.archive-directory}") String archiveDirectory,
+                                    @Value("${patient.partitioning.release-batch-size:1000}") int releaseBatchSize,
+                                    @Value("${kafka.spill.send-timeout-ms:10000}") long tombstoneTimeoutMs) {
+        this.dataSource = dataSource;
+        this.patientShardRouter = patientShardRouter;
+        this.emailIndex = emailIndex;
+        this.kafkaProducer = kafkaProducer;
+        this.retentionMonths = retentionMonths;
+        this.archiveDirectory = Path.of(archiveDirectory);
+        this.releaseBatchSize = releaseBatchSize;
+        this.tombstoneTimeoutMs = tombstoneTimeoutMs;
+    }
+
+    @Scheduled(fixedDelayString = "${patient.partitioning.maintenance-interval-ms:3600000}")
+    public void archiveExpiredPartitions() {
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+            int target = shard;
+            try {
+                patientShardRouter.onShard(shard, () -> {
+                    archiveShard(target, oldestKept);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Archiving patient partitions on shard {} failed: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    private void archiveShard(int shard, YearMonth oldestKept) {
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("select pg_try_advisory_lock(?)", Boolean.class,
+                    LOCK_KEY))) {
+                return;
+            }
+            try {
+                List<String> attached = jdbcTemplate.queryForList("select c.relname from pg_inherits i "
+                        + "join pg_class c on c.oid = i.inhrelid "
+                        + "where i.inhparent = 'patient'::regclass and c.relname ~ ?", String.class, PARTITION_PATTERN);
+                for (String partition : expired(attached, oldestKept)) {
+                    // Not CONCURRENTLY: Postgres refuses that while a default partition exists
+                    jdbcTemplate.execute("alter table patient detach partition " + partition);
+                }
+
+                List<String> detached = jdbcTemplate.queryForList("select relname from pg_class "
+                        + "where relkind = 'r' and not relispartition and relname ~ ? "
+                        + "and relnamespace = current_schema()::regnamespace", String.class, PARTITION_PATTERN);
+                for (String table : detached) {
+                    Path archive = archive(connection, shard, table);
+                    long released = release(jdbcTemplate, table);
+                    jdbcTemplate.execute("drop table " + table);
+                    log.info("Archived patient partition {} ({} patients) to {}", table, released, archive);
+                }
+            } finally {
+                jdbcTemplate.queryForObject("select pg_advisory_unlock(?)", Boolean.class, LOCK_KEY);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Could not archive patient partitions", e);
+        }
+    }
+
+    private Path archive(Connection connection, int shard, String table) throws SQLException, IOException {
+        Path directory = archiveDirectory.resolve("shard-" + shard);
+        Files.createDirectories(directory);
+        long oid = new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                .queryForObject("select ?::regclass::oid", Long.class, table);
+        Path target = directory.resolve(table + "-" + oid + ".csv.gz");
+        Path temp = directory.resolve(table + "-" + oid + ".csv.gz.tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut("copy " + table + " to stdout with (format csv, header)", gzip);
+            gzip.finish();
+            gzip.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    // Walks the table's ids in order; a failure leaves the table in place for the next run
+    long release(JdbcTemplate jdbcTemplate, String table) {
+        long released = 0;
+        List<UUID> batch;
+        UUID after = new UUID(0, 0);
+        do {
+            batch = jdbcTemplate.queryForList("select id from " + table + " where id > ? order by id limit ?",
+                    UUID.class, after, releaseBatchSize);
+            if (!batch.isEmpty()) {
+                kafkaProducer.publishTombstones(batch, tombstoneTimeoutMs);
+                emailIndex.releasePatients(batch);
+                released += batch.size();
+                after = batch.getLast();
+            }
+        } while (batch.size() == releaseBatchSize);
+        return released;
+    }
+
+    static List<String> expired(List<String> partitions, YearMonth oldestKept) {
+        return partitions.stream().filter(partition -> month(partition).isBefore(oldestKept)).toList();
+    }
+
+    private static YearMonth month(String partition) {
+        return YearMonth.of(Integer.parseInt(partition.substring(9, 13)), Integer.parseInt(partition.substring(14, 16)));
+    }
+}
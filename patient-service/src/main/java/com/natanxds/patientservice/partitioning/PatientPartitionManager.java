@@ -0,0 +1,184 @@
+package com.natanxds.patientservice.partitioning;
+
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the patient table range-partitioned by month of {@code registered_date} (Postgres only).
+ * An existing unpartitioned table is converted on startup, and partitions are created
+ * {@code months-ahead} months in advance so inserts never fall through to the default partition.
+ * Rows that still land there (back-dated registrations) get their month's partition on the next run, so
+ * {@link PatientPartitionArchiver} can archive them like any other month.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.partitioning.enabled", havingValue = "true")
+public class PatientPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientPartitionManager.class);
+    // Serialises partition creation across instances, which would otherwise race on the same table name
+    private static final long LOCK_KEY = 0x7061_7469_656e_7403L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final PatientShardRouter patientShardRouter;
+    private final int monthsAhead;
+    private final boolean sharded;
+
+    public PatientPartitionManager(DataSource dataSource,
+                                   TransactionTemplate transactionTemplate,
+                                   PatientShardRouter patientShardRouter,
+                                   @Value("${patient.partitioning.months-ahead:3}") int monthsAhead,
+                                   @Value("${patient.sharding.enabled:false}") boolean sharded) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.dataSource = dataSource;
+        this.transactionTemplate = transactionTemplate;
+        this.patientShardRouter = patientShardRouter;
+        this.monthsAhead = monthsAhead;
+        this.sharded = sharded;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+            patientShardRouter.onShard(shard, () -> {
+                if (!sharded) {
+                    // Partitioned tables cannot have a unique email column, so uniqueness moves to the index table
+                    new ResourceDatabasePopulator(new ClassPathResource("sharding/email-index-schema.sql"))
+                            .execute(dataSource);
+                }
+                transactionTemplate.execute(status -> {
+                    migrate();
+                    return null;
+                });
+                // Unlike the scheduled run, a failure here stops startup
+                createPartitions(YearMonth.now());
+                return null;
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${patient.partitioning.maintenance-interval-ms:3600000}",
+            initialDelayString = "${patient.partitioning.maintenance-interval-ms:3600000}")
+    public void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+            try {
+                patientShardRouter.onShard(shard, () -> {
+                    createPartitions(current);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.error("Creating patient partitions on shard {} failed", shard, e);
+            }
+        }
+    }
+
+    private void createPartitions(YearMonth current) {
+        List<YearMonth> inDefault = jdbcTemplate.queryForList(
+                        "select distinct to_char(registered_date, 'YYYY-MM') from patient_default", String.class)
+                .stream().map(YearMonth::parse).toList();
+        for (YearMonth month : monthsToPartition(inDefault, current, monthsAhead)) {
+            transactionTemplate.execute(status -> {
+                createPartition(month);
+                return null;
+            });
+        }
+    }
+
+    // Months with rows stranded in the default partition, then the current month and monthsAhead after it
+    static List<YearMonth> monthsToPartition(List<YearMonth> inDefault, YearMonth current, int monthsAhead) {
+        List<YearMonth> months = new ArrayList<>(inDefault);
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        return months.stream().distinct().toList();
+    }
+
+    static String partitionName(YearMonth month) {
+        return String.format("patient_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private void migrate() {
+        String kind = jdbcTemplate.query("select c.relkind from pg_class c "
+                        + "where c.relname = 'patient' and c.relnamespace = current_schema()::regnamespace",
+                rs -> rs.next() ? rs.getString(1) : null);
+        if ("p".equals(kind)) {
+            return;
+        }
+
+        if (kind != null) {
+            jdbcTemplate.execute("alter table patient rename to patient_unpartitioned");
+        }
+        // The partition key has to be part of the primary key; ids are random UUIDs, so id alone stays unique
+        jdbcTemplate.execute("""
+                create table patient
+                (
+                    id              uuid         not null,
+                    name            varchar(255) not null,
+                    email           varchar(255) not null,
+                    address         varchar(255) not null,
+                    date_of_birth   date         not null,
+                    registered_date date         not null,
+                    primary key (id, registered_date)
+                ) partition by range (registered_date)""");
+        jdbcTemplate.execute("create index patient_email_idx on patient (email)");
+        jdbcTemplate.execute("create table patient_default partition of patient default");
+        if (kind == null) {
+            return;
+        }
+
+        List<YearMonth> months = jdbcTemplate.queryForList(
+                "select distinct to_char(registered_date, 'YYYY-MM') from patient_unpartitioned", String.class)
+                .stream().map(YearMonth::parse).toList();
+        months.forEach(this::createPartition);
+        int rows = jdbcTemplate.update("insert into patient (id, name, email, address, date_of_birth, registered_date) "
+                + "select id, name, email, address, date_of_birth, registered_date from patient_unpartitioned");
+        if (!sharded) {
+            jdbcTemplate.update("insert into patient_email_index (email, patient_id) "
+                    + "select email, id from patient_unpartitioned on conflict do nothing");
+        }
+        jdbcTemplate.execute("drop table patient_unpartitioned");
+        log.info("Converted patient table to {} monthly partitions ({} rows)", months.size(), rows);
+    }
+
+    // Runs inside a transaction. The partition is created standalone and attached after that month's rows are
+    // moved out of the default partition: PARTITION OF would fail while the default still holds any of them
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("select pg_advisory_xact_lock(" + LOCK_KEY + ")");
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class,
+                partition))) {
+            return;
+        }
+
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute("create table " + partition + " (like patient including defaults including constraints)");
+        int moved = jdbcTemplate.update("with moved as (delete from patient_default "
+                + "where registered_date >= ? and registered_date < ? returning *) "
+                + "insert into " + partition + " select * from moved", from, to);
+        jdbcTemplate.execute("alter table patient attach partition " + partition
+                + " for values from ('" + from + "') to ('" + to + "')");
+        if (moved > 0) {
+            log.info("Moved {} patients from the default partition into {}", moved, partition);
+        }
+    }
+}
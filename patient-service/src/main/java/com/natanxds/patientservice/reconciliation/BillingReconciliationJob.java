@@ -0,0 +1,364 @@
+package com.natanxds.patientservice.reconciliation;
+
+import billing.AccountRange;
+import billing.AccountRangesDigest;
+import billing.BillingAccountChunk;
+import billing.BillingRequest;
+import billing.RangeDigest;
+import com.natanxds.patientservice.export.KeyRange;
+import com.natanxds.patientservice.grpc.BillingServiceGrpcClient;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import com.natanxds.patientservice.sharding.ShardContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.natanxds.common.digest.IdSetDigest;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds patients without a billing account and creates them. createPatient queues a failed account for a
+ * retry (see BillingAccountReconciler), but a crash between the commit and the queue insert still leaves a gap.
+ * <p>
+ * The uuid keyspace is cut into {@code ranges} ranges of {@code leaves-per-range} leaves. Every run takes
+ * the next {@code ranges-per-run} ranges, wrapping around, and compares them on {@code parallelism}
+ * threads. One pass over a range's patient ids on every shard yields a digest per leaf, and the range's
+ * digest is their sum; if billing-service's digest of its accounts in the range is the same, the range is
+ * done. Otherwise only the leaves whose digests differ are merge-joined: patient rows sorted by id against
+ * the account ids billing streams in the same order. Missing accounts are created in batches of
+ * {@code repair-batch-size}; accounts without a patient are only counted. Billing creates at most one
+ * account per patient, so racing an in-flight createPatient or the pending queue is harmless.
+ * <p>
+ * Every task schedules the job, but a run first takes an advisory lock in the default shard's database and
+ * is skipped while another task holds it. The lock is released with the session if the holder dies.
+ */
+@Component
+@ConditionalOnProperty(name = "billing.reconciliation.scan.enabled", havingValue = "true", matchIfMissing = true)
+public class BillingReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            BillingReconciliationJob.class);
+    // Only one task per deployment reconciles at a time
+    private static final long LOCK_KEY = 0x7061_7469_656e_7402L;
+    private static final String SELECT_IDS = "select id from patient where id >= ?";
+    private static final String SELECT_ROWS = "select id, name, email from patient where id >= ?";
+    // Postgres' uuid order, which billing-service's account store follows too
+    static final Comparator<UUID> UNSIGNED_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+    private static final ThreadFactory WORKER_THREADS = Thread.ofPlatform()
+            .name("billing-reconciliation-", 0).daemon().factory();
+
+    private final DataSource dataSource;
+    private final PatientShardRouter patientShardRouter;
+    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final List<KeyRange> leaves;
+    private final int ranges;
+    private final int leavesPerRange;
+    private final int rangesPerRun;
+    private final int parallelism;
+    private final int fetchSize;
+    private final int chunkSize;
+    private final int repairBatchSize;
+    private final Counter repairedCounter;
+    private final Counter orphanedCounter;
+
+    // Only used by the scheduler thread
+    private int nextRange;
+
+    public BillingReconciliationJob(DataSource dataSource,
+                                    PatientShardRouter patientShardRouter,
+                                    BillingServiceGrpcClient billingServiceGrpcClient,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${billing.reconciliation.scan.ranges:256}") int ranges,
+                                    @Value("${billing.reconciliation.scan.leaves-per-range:16}") int leavesPerRange,
+                                    @Value("${billing.reconciliation.scan.ranges-per-run:32}") int rangesPerRun,
+                                    @Value("${billing.reconciliation.scan.parallelism:4}") int parallelism,
+                                    @Value("${billing.reconciliation.scan.fetch-size:1000}") int fetchSize,
+                                    @Value("${billing.reconciliation.scan.chunk-size:1000}") int chunkSize,
+                                    @Value("${billing.reconciliation.scan.repair-batch-size:100}") int repairBatchSize) {
+        this.dataSource = dataSource;
+        this.patientShardRouter = patientShardRouter;
+        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.leaves = KeyRange.split(ranges * leavesPerRange);
+        this.ranges = ranges;
+        this.leavesPerRange = leavesPerRange;
+        this.rangesPerRun = Math.min(rangesPerRun, ranges);
+        this.parallelism = parallelism;
+        this.fetchSize = fetchSize;
+        this.chunkSize = chunkSize;
+        this.repairBatchSize = repairBatchSize;
+        this.repairedCounter = Counter.builder("billing.reconciliation.repaired")
+                .description("Billing accounts created for patients found without one")
+                .register(meterRegistry);
+        this.orphanedCounter = Counter.builder("billing.reconciliation.orphaned")
+                .description("Billing accounts found without a patient")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${billing.reconciliation.scan.interval-ms:60000}",
+            initialDelayString = "${billing.reconciliation.scan.interval-ms:60000}")
+    public void reconcile() {
+        if (!billingServiceGrpcClient.isAvailable()) {
+            return;
+        }
+        patientShardRouter.onShard(ShardContext.DEFAULT_SHARD, () -> {
+            reconcileIfLocked();
+            return null;
+        });
+    }
+
+    private void reconcileIfLocked() {
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("select pg_try_advisory_lock(?)", Boolean.class,
+                    LOCK_KEY))) {
+                return;
+            }
+            try {
+                reconcileRanges();
+            } finally {
+                jdbcTemplate.queryForObject("select pg_advisory_unlock(?)", Boolean.class, LOCK_KEY);
+            }
+        } catch (SQLException e) {
+            log.warn("Billing reconciliation could not take its lock: {}", e.getMessage());
+        }
+    }
+
+    private void reconcileRanges() {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, WORKER_THREADS);
+        try {
+            List<Future<Result>> results = new ArrayList<>(rangesPerRun);
+            for (int i = 0; i < rangesPerRun; i++) {
+                int range = (nextRange + i) % ranges;
+                results.add(workers.submit(() -> reconcileRange(range)));
+            }
+            Result total = new Result(0, 0, 0, 0, 0);
+            for (Future<Result> result : results) {
+                total = total.plus(result.get());
+            }
+
+            log.info("Reconciled billing accounts of ranges {} to {} of {} in {} ms: {} ranges matched, {} leaves "
+                            + "joined, {} accounts missing, {} created, {} without a patient",
+                    nextRange, (nextRange + rangesPerRun - 1) % ranges, ranges,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), total.matchedRanges(),
+                    total.joinedLeaves(), total.missing(), total.created(), total.orphaned());
+            nextRange = (nextRange + rangesPerRun) % ranges;
+        } catch (ExecutionException e) {
+            // The same ranges are compared again next run
+            log.warn("Billing reconciliation from range {} failed: {}", nextRange, e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private Result reconcileRange(int range) {
+        List<KeyRange> rangeLeaves = leaves.subList(range * leavesPerRange, (range + 1) * leavesPerRange);
+        KeyRange whole = new KeyRange(rangeLeaves.getFirst().lower(), rangeLeaves.getLast().upper());
+
+        IdSetDigest[] patientDigests = patientDigests(whole, rangeLeaves);
+        IdSetDigest rangeDigest = new IdSetDigest();
+        for (IdSetDigest leafDigest : patientDigests) {
+            rangeDigest.add(leafDigest);
+        }
+        AccountRangesDigest billingDigest = billingServiceGrpcClient.digestBillingAccounts(
+                List.of(accountRange(whole)));
+        if (matches(rangeDigest, billingDigest.getDigests(0))) {
+            return new Result(1, 0, 0, 0, 0);
+        }
+
+        AccountRangesDigest billingLeafDigests = billingServiceGrpcClient.digestBillingAccounts(
+                rangeLeaves.stream().map(this::accountRange).toList());
+        Result result = new Result(0, 0, 0, 0, 0);
+        for (int leaf = 0; leaf < rangeLeaves.size(); leaf++) {
+            if (!matches(patientDigests[leaf], billingLeafDigests.getDigests(leaf))) {
+                result = result.plus(mergeJoin(rangeLeaves.get(leaf)));
+            }
+        }
+        return result;
+    }
+
+    // Digest of the patient ids in each leaf of the range, over all shards
+    private IdSetDigest[] patientDigests(KeyRange whole, List<KeyRange> rangeLeaves) {
+        List<IdSetDigest[]> perShard = patientShardRouter.onAllShards(shard -> {
+            IdSetDigest[] shardDigests = newDigests(rangeLeaves.size());
+            query(SELECT_IDS, whole, resultSet -> {
+                UUID id = resultSet.getObject(1, UUID.class);
+                shardDigests[leafOf(id, rangeLeaves)].add(id);
+            });
+            return shardDigests;
+        });
+
+        IdSetDigest[] digests = newDigests(rangeLeaves.size());
+        for (IdSetDigest[] shardDigests : perShard) {
+            for (int leaf = 0; leaf < digests.length; leaf++) {
+                digests[leaf].add(shardDigests[leaf]);
+            }
+        }
+        return digests;
+    }
+
+    private Result mergeJoin(KeyRange leaf) {
+        List<List<PatientRow>> perShard = patientShardRouter.onAllShards(shard -> {
+            List<PatientRow> rows = new ArrayList<>();
+            query(SELECT_ROWS, leaf, resultSet -> rows.add(new PatientRow(
+                    resultSet.getObject(1, UUID.class), resultSet.getString(2), resultSet.getString(3))));
+            return rows;
+        });
+        List<PatientRow> patients = new ArrayList<>();
+        perShard.forEach(patients::addAll);
+        patients.sort(Comparator.comparing(PatientRow::id, UNSIGNED_ORDER));
+
+        List<BillingRequest> missing = new ArrayList<>();
+        long orphaned = join(patients.stream().map(PatientRow::id).toList(),
+                billingServiceGrpcClient.listBillingAccounts(accountRange(leaf)),
+                index -> missing.add(patients.get(index).billingRequest()));
+
+        long created = 0;
+        for (int from = 0; from < missing.size(); from += repairBatchSize) {
+            created += billingServiceGrpcClient.createBillingAccounts(
+                    missing.subList(from, Math.min(missing.size(), from + repairBatchSize))).getCreated();
+        }
+        repairedCounter.increment(created);
+        orphanedCounter.increment(orphaned);
+        if (!missing.isEmpty() || orphaned > 0) {
+            log.warn("Billing accounts from {}: {} patients had none ({} created), {} accounts have no patient",
+                    leaf.lower(), missing.size(), created, orphaned);
+        }
+        return new Result(0, 1, missing.size(), created, orphaned);
+    }
+
+    /**
+     * Merge-joins patient ids, sorted in {@link #UNSIGNED_ORDER}, against the account ids billing streams in
+     * the same order. Reports the index of every patient without an account.
+     *
+     * @return the number of accounts without a patient
+     */
+    static long join(List<UUID> patientIds, Iterator<BillingAccountChunk> chunks, IntConsumer missing) {
+        long orphaned = 0;
+        int next = 0;
+        while (chunks.hasNext()) {
+            ByteBuffer accountIds = chunks.next().getPatientIds().asReadOnlyByteBuffer();
+            while (accountIds.hasRemaining()) {
+                UUID accountPatientId = new UUID(accountIds.getLong(), accountIds.getLong());
+                // Patients ordered before the next account have none
+                while (next < patientIds.size()
+                        && UNSIGNED_ORDER.compare(patientIds.get(next), accountPatientId) < 0) {
+                    missing.accept(next++);
+                }
+                if (next < patientIds.size() && patientIds.get(next).equals(accountPatientId)) {
+                    next++;
+                } else {
+                    orphaned++;
+                }
+            }
+        }
+        while (next < patientIds.size()) {
+            missing.accept(next++);
+        }
+        return orphaned;
+    }
+
+    static boolean matches(IdSetDigest digest, RangeDigest billing) {
+        return digest.count() == billing.getCount() && digest.hash() == billing.getHash();
+    }
+
+    private void query(String select, KeyRange range, RowHandler handler) {
+        try (Connection connection = dataSource.getConnection()) {
+            // Postgres only streams through a cursor inside a transaction; otherwise it buffers the result
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    range.upper() == null ? select : select + " and id < ?")) {
+                statement.setFetchSize(fetchSize);
+                statement.setObject(1, range.lower());
+                if (range.upper() != null) {
+                    statement.setObject(2, range.upper());
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        handler.accept(resultSet);
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading patients from " + range.lower() + " failed", e);
+        }
+    }
+
+    private AccountRange accountRange(KeyRange range) {
+        return AccountRange.newBuilder()
+                .setLower(range.lower().toString())
+                .setUpper(range.upper() == null ? "" : range.upper().toString())
+                .setChunkSize(chunkSize)
+                .build();
+    }
+
+    private static int leafOf(UUID id, List<KeyRange> rangeLeaves) {
+        int leaf = rangeLeaves.size() - 1;
+        while (leaf > 0 && UNSIGNED_ORDER.compare(id, rangeLeaves.get(leaf).lower()) < 0) {
+            leaf--;
+        }
+        return leaf;
+    }
+
+    private static IdSetDigest[] newDigests(int count) {
+        IdSetDigest[] digests = new IdSetDigest[count];
+        for (int i = 0; i < count; i++) {
+            digests[i] = new IdSetDigest();
+        }
+        return digests;
+    }
+
+    private record PatientRow(UUID id, String name, String email) {
+
+        BillingRequest billingRequest() {
+            return BillingRequest.newBuilder()
+                    .setPatientId(id.toString())
+                    .setName(name)
+                    .setEmail(email)
+                    .build();
+        }
+    }
+
+    private record Result(int matchedRanges, int joinedLeaves, long missing, long created, long orphaned) {
+
+        Result plus(Result other) {
+            return new Result(matchedRanges + other.matchedRanges, joinedLeaves + other.joinedLeaves,
+                    missing + other.missing, created + other.created, orphaned + other.orphaned);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void accept(ResultSet resultSet) throws SQLException;
+    }
+}
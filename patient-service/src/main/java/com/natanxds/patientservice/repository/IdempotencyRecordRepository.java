@@ -0,0 +1,41 @@
+package com.natanxds.patientservice.repository;
+
+import com.natanxds.patientservice.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    // 0 when the key is already held, by a finished request or one still running on any instance
+    @Transactional
+    @Modifying
+    @Query(value = "insert into idempotency_record (idempotency_key, request_hash, created_at) "
+            + "values (:idempotencyKey, :requestHash, :now) on conflict (idempotency_key) do nothing",
+            nativeQuery = true)
+    int claim(@Param("idempotencyKey") String idempotencyKey, @Param("requestHash") String requestHash,
+              @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.responseBody = :responseBody "
+            + "where r.idempotencyKey = :idempotencyKey and r.createdAt = :createdAt")
+    int complete(@Param("idempotencyKey") String idempotencyKey, @Param("createdAt") Instant createdAt,
+                 @Param("responseBody") String responseBody);
+
+    // Matching createdAt too leaves a record alone that another instance has since re-claimed
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :idempotencyKey and r.createdAt = :createdAt")
+    int release(@Param("idempotencyKey") String idempotencyKey, @Param("createdAt") Instant createdAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
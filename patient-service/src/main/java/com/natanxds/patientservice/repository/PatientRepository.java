@@ -2,14 +2,39 @@ package com.natanxds.patientservice.repository;
 
 import com.natanxds.patientservice.model.Patient;
 import jakarta.validation.constraints.Email;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
     boolean existsByEmail(String email);
     boolean existsByEmailAndIdNot(String email, UUID id);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p")
+    Stream<Patient> streamAll();
+
+    List<Patient> findAllByOrderByIdAsc(Limit limit);
+
+    List<Patient> findByIdGreaterThanOrderByIdAsc(UUID after, Limit limit);
+
+    // One DELETE statement; deleteById would select the row into the persistence context first
+    @Modifying
+    @Query("delete from Patient p where p.id = :id")
+    int deletePatientById(@Param("id") UUID id);
 }
@@ -0,0 +1,13 @@
+package com.natanxds.patientservice.repository;
+
+import com.natanxds.patientservice.model.PendingBillingAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PendingBillingAccountRepository extends JpaRepository<PendingBillingAccount, UUID> {
+    List<PendingBillingAccount> findTop100ByOrderByQueuedAtAsc();
+}
@@ -0,0 +1,24 @@
+package com.natanxds.patientservice.repository;
+
+import com.natanxds.patientservice.model.TableVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface TableVersionRepository extends JpaRepository<TableVersion, String> {
+    @Modifying
+    @Query("update TableVersion v set v.version = v.version + 1, v.lastModified = :now "
+            + "where v.tableName = :tableName")
+    int bump(@Param("tableName") String tableName, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "insert into table_version (table_name, version, last_modified) "
+            + "values (:tableName, :version, :now)", nativeQuery = true)
+    void insert(@Param("tableName") String tableName, @Param("version") long version,
+                @Param("now") Instant now);
+}
@@ -0,0 +1,11 @@
+package com.natanxds.patientservice.service;
+
+import com.natanxds.patientservice.dto.PatientRequestDTO;
+import com.natanxds.patientservice.dto.PatientResponseDTO;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    PatientResponseDTO execute(String idempotencyKey, PatientRequestDTO patientRequestDTO,
+                               Supplier<PatientResponseDTO> action);
+}
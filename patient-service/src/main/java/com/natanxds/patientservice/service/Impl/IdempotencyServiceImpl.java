@@ -0,0 +1,234 @@
+package com.natanxds.patientservice.service.Impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.natanxds.patientservice.dto.PatientRequestDTO;
+import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.exception.IdempotencyKeyReusedException;
+import com.natanxds.patientservice.exception.IdempotencyRequestInProgressException;
+import com.natanxds.patientservice.model.IdempotencyRecord;
+import com.natanxds.patientservice.repository.IdempotencyRecordRepository;
+import com.natanxds.patientservice.service.IdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per idempotency key across all instances. The key is claimed with an
+ * {@code insert ... on conflict do nothing} before the work starts and completed with the response afterwards;
+ * a duplicate on another instance replays the stored response, or gets {@link IdempotencyRequestInProgressException}
+ * while the first request is still running. Duplicates on the same instance simply wait for it.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration ttl;
+
+    private final Duration claimTimeout;
+
+    private final Map<String, CachedResponse> cache;
+
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyServiceImpl(IdempotencyRecordRepository idempotencyRecordRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                                  @Value("${idempotency.cache-size:10000}") int cacheSize,
+                                  @Value("${idempotency.claim-timeout-seconds:60}") long claimTimeoutSeconds) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public PatientResponseDTO execute(String idempotencyKey, PatientRequestDTO patientRequestDTO,
+                                      Supplier<PatientResponseDTO> action) {
+        String requestHash = hash(patientRequestDTO);
+
+        CachedResponse cached = lookup(idempotencyKey);
+        if (cached != null) {
+            checkHash(idempotencyKey, cached.requestHash(), requestHash);
+            return cached.response();
+        }
+
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(idempotencyKey, mine);
+        if (existing != null) {
+            checkHash(idempotencyKey, existing.requestHash(), requestHash);
+            try {
+                return existing.response().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            // Database timestamps keep microseconds; the claim is later matched on createdAt
+            Instant claimedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+            if (!claim(idempotencyKey, requestHash, claimedAt)) {
+                PatientResponseDTO replayed = replay(idempotencyKey, requestHash);
+                mine.response().complete(replayed);
+                return replayed;
+            }
+
+            PatientResponseDTO response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                // Let a retry run the request again
+                idempotencyRecordRepository.release(idempotencyKey, claimedAt);
+                throw e;
+            }
+            store(idempotencyKey, requestHash, response, claimedAt);
+            mine.response().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+        log.info("Deleted {} expired idempotency records", deleted);
+    }
+
+    private CachedResponse lookup(String idempotencyKey) {
+        CachedResponse cached;
+        synchronized (cache) {
+            cached = cache.get(idempotencyKey);
+        }
+        if (cached != null && cached.createdAt().isAfter(Instant.now().minus(ttl))) {
+            return cached;
+        }
+
+        return idempotencyRecordRepository.findById(idempotencyKey)
+                .filter(record -> record.getResponseBody() != null)
+                .filter(record -> record.getCreatedAt().isAfter(Instant.now().minus(ttl)))
+                .map(record -> {
+                    CachedResponse loaded = new CachedResponse(record.getRequestHash(),
+                            readResponse(record.getResponseBody()), record.getCreatedAt());
+                    synchronized (cache) {
+                        cache.put(idempotencyKey, loaded);
+                    }
+                    return loaded;
+                })
+                .orElse(null);
+    }
+
+    // An expired record, or a claim left behind by an instance that died mid-request, is removed and the
+    // claim tried once more
+    private boolean claim(String idempotencyKey, String requestHash, Instant now) {
+        if (idempotencyRecordRepository.claim(idempotencyKey, requestHash, now) > 0) {
+            return true;
+        }
+        IdempotencyRecord existing = idempotencyRecordRepository.findById(idempotencyKey).orElse(null);
+        if (existing != null && !isStale(existing, now)) {
+            return false;
+        }
+        if (existing != null) {
+            idempotencyRecordRepository.release(idempotencyKey, existing.getCreatedAt());
+        }
+        return idempotencyRecordRepository.claim(idempotencyKey, requestHash, now) > 0;
+    }
+
+    private boolean isStale(IdempotencyRecord record, Instant now) {
+        Duration maxAge = record.getResponseBody() == null ? claimTimeout : ttl;
+        return record.getCreatedAt().isBefore(now.minus(maxAge));
+    }
+
+    // The key is held by another request: replay its response once it has one
+    private PatientResponseDTO replay(String idempotencyKey, String requestHash) {
+        IdempotencyRecord record = idempotencyRecordRepository.findById(idempotencyKey).orElse(null);
+        if (record != null) {
+            checkHash(idempotencyKey, record.getRequestHash(), requestHash);
+        }
+        if (record == null || record.getResponseBody() == null) {
+            throw new IdempotencyRequestInProgressException(
+                    "Idempotency key is held by a request still in progress: " + idempotencyKey);
+        }
+        PatientResponseDTO response = readResponse(record.getResponseBody());
+        synchronized (cache) {
+            cache.put(idempotencyKey, new CachedResponse(record.getRequestHash(), response, record.getCreatedAt()));
+        }
+        return response;
+    }
+
+    private void store(String idempotencyKey, String requestHash, PatientResponseDTO response, Instant claimedAt) {
+        synchronized (cache) {
+            cache.put(idempotencyKey, new CachedResponse(requestHash, response, claimedAt));
+        }
+        try {
+            idempotencyRecordRepository.complete(idempotencyKey, claimedAt, objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            log.error("Could not persist idempotency record {}: {}", idempotencyKey, e.getMessage());
+            idempotencyRecordRepository.release(idempotencyKey, claimedAt);
+        }
+    }
+
+    private PatientResponseDTO readResponse(String body) {
+        try {
+            return objectMapper.readValue(body, PatientResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt idempotency record", e);
+        }
+    }
+
+    private static void checkHash(String idempotencyKey, String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(
+                    "Idempotency key was already used with a different request: " + idempotencyKey);
+        }
+    }
+
+    private static String hash(PatientRequestDTO patientRequestDTO) {
+        String canonical = String.join("\u0000",
+                String.valueOf(patientRequestDTO.getName()),
+                String.valueOf(patientRequestDTO.getEmail()),
+                String.valueOf(patientRequestDTO.getAddress()),
+                String.valueOf(patientRequestDTO.getDateOfBirth()),
+                String.valueOf(patientRequestDTO.getRegisteredDate()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedResponse(String requestHash, PatientResponseDTO response, Instant createdAt) {
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<PatientResponseDTO> response) {
+    }
+}
@@ -1,85 +1,312 @@
 package com.natanxds.patientservice.service.Impl;
 
+import billing.BillingResponse;
+import com.natanxds.patientservice.dto.PatientPageDTO;
 import com.natanxds.patientservice.dto.PatientRequestDTO;
 import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.dto.PatientsVersionDTO;
 import com.natanxds.patientservice.exception.EmailAlreadyExistsException;
 import com.natanxds.patientservice.exception.PatientNotFoundException;
+import com.natanxds.patientservice.grpc.BillingAccountReconciler;
 import com.natanxds.patientservice.grpc.BillingServiceGrpcClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.natanxds.patientservice.kafka.KafkaProducer;
+import com.natanxds.patientservice.mapper.PatientJsonWriter;
 import com.natanxds.patientservice.mapper.PatientMapper;
 import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.model.TableVersion;
 import com.natanxds.patientservice.repository.PatientRepository;
+import com.natanxds.patientservice.repository.TableVersionRepository;
 import com.natanxds.patientservice.service.PatientService;
+import com.natanxds.patientservice.sharding.EmailIndex;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import com.natanxds.patientservice.sharding.ShardContext;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
+import org.natanxds.common.logging.LogRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class PatientServiceImpl implements PatientService {
 
+    private static final String PATIENT_TABLE = "patient";
+
+    // Postgres orders uuid columns bytewise, which is unsigned; UUID.compareTo is signed
+    private static final Comparator<Patient> BY_ID = (a, b) -> {
+        int msb = Long.compareUnsigned(a.getId().getMostSignificantBits(), b.getId().getMostSignificantBits());
+        return msb != 0 ? msb
+                : Long.compareUnsigned(a.getId().getLeastSignificantBits(), b.getId().getLeastSignificantBits());
+    };
+
     private final PatientRepository patientRepository;
 
     private final BillingServiceGrpcClient billingServiceGrpcClient;
 
     private final KafkaProducer kafkaProducer;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final BillingAccountReconciler billingAccountReconciler;
+
+    private final TableVersionRepository tableVersionRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final EntityManager entityManager;
+
+    private final PatientShardRouter patientShardRouter;
+
+    private final EmailIndex emailIndex;
+
+    private final LogRateLimiter createdLogLimiter;
+
     public PatientServiceImpl(PatientRepository patientRepository,
                           BillingServiceGrpcClient billingServiceGrpcClient,
-                          KafkaProducer kafkaProducer) {
+                          KafkaProducer kafkaProducer,
+                          TransactionTemplate transactionTemplate,
+                          BillingAccountReconciler billingAccountReconciler,
+                          TableVersionRepository tableVersionRepository,
+                          ObjectMapper objectMapper,
+                          EntityManager entityManager,
+                          PatientShardRouter patientShardRouter,
+                          EmailIndex emailIndex,
+                          @Value("${logging.sampling.interval-ms:1000}") long logIntervalMs) {
         this.patientRepository = patientRepository;
         this.billingServiceGrpcClient = billingServiceGrpcClient;
         this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.billingAccountReconciler = billingAccountReconciler;
+        this.tableVersionRepository = tableVersionRepository;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.patientShardRouter = patientShardRouter;
+        this.emailIndex = emailIndex;
+        this.createdLogLimiter = new LogRateLimiter(Duration.ofMillis(logIntervalMs));
     }
 
     @Override
     public List<PatientResponseDTO> getPatients() {
-        List<Patient> patients = patientRepository.findAll();
+        List<List<Patient>> shards = patientShardRouter.onAllShards(shard -> patientRepository.findAll());
+
+        return shards.stream().flatMap(List::stream).map(PatientMapper::toPatientResponseDTO).toList();
+    }
+
+    @Override
+    public void writePatients(OutputStream out) throws IOException {
+        try (PatientJsonWriter writer = new PatientJsonWriter(objectMapper.getFactory(), out)) {
+            // Shards are streamed one after another into the same array, each in its own read-only transaction
+            for (int shard = 0; shard < patientShardRouter.shardCount(); shard++) {
+                patientShardRouter.onShard(shard, () -> readOnlyTransactionTemplate.execute(status -> {
+                    try (Stream<Patient> patients = patientRepository.streamAll()) {
+                        Iterator<Patient> iterator = patients.iterator();
+                        while (iterator.hasNext()) {
+                            Patient patient = iterator.next();
+                            writer.write(patient);
+                            // Keep the persistence context from growing with the table
+                            entityManager.detach(patient);
+                        }
+                        return null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public PatientPageDTO getPatientsPage(UUID after, int size) {
+        Limit limit = Limit.of(size);
+        // Every shard returns its own first page after the cursor; the global page is the smallest ids among them
+        List<Patient> page = patientShardRouter.onAllShards(shard -> after == null
+                        ? patientRepository.findAllByOrderByIdAsc(limit)
+                        : patientRepository.findByIdGreaterThanOrderByIdAsc(after, limit))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(BY_ID)
+                .limit(size)
+                .toList();
+
+        String nextCursor = page.size() == size ? page.get(page.size() - 1).getId().toString() : null;
+        return new PatientPageDTO(page.stream().map(PatientMapper::toPatientResponseDTO).toList(), nextCursor);
+    }
 
-        return patients.stream().map(PatientMapper::toPatientResponseDTO).toList();
+    @Override
+    public PatientsVersionDTO getPatientsVersion() {
+        TableVersion version = tableVersionRepository.findById(PATIENT_TABLE)
+                .orElseGet(this::initPatientsVersion);
+        return new PatientsVersionDTO(version.getVersion(), version.getLastModified());
     }
 
     @Override
     public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
-        if (patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
-            throw new EmailAlreadyExistsException("A patient with this email address already exists: "
-                    + patientRequestDTO.getEmail());
+        Patient newPatient = PatientMapper.toEntity(patientRequestDTO);
+        newPatient.setId(UUID.randomUUID());
+        reserveEmail(newPatient.getEmail(), newPatient.getId());
+
+        Patient patient;
+        try {
+            patient = writePatient(newPatient.getId(), () -> {
+                entityManager.persist(newPatient);
+                return newPatient;
+            });
+        } catch (RuntimeException e) {
+            emailIndex.release(newPatient.getEmail(), newPatient.getId());
+            throw e;
         }
-        Patient patient = patientRepository.save(PatientMapper.toEntity(patientRequestDTO));
 
-        billingServiceGrpcClient.createBillingAccount(patient.getId().toString(),
-                patient.getName(), patient.getEmail());
+        // Only a committed patient gets an account; the call overlaps the Kafka publishes only, the version bump
+        // has already run in writePatient
+        CompletableFuture<BillingResponse> billingAccount = billingServiceGrpcClient.createBillingAccountAsync(
+                patient.getId().toString(), patient.getName(), patient.getEmail());
 
         kafkaProducer.sendEvent(patient);
-        log.info("AAAAAAAAAAAAAAAPatient created: {}", patient);
+        kafkaProducer.publishSnapshot(patient);
+
+        try {
+            billingAccount.join();
+        } catch (CompletionException e) {
+            // The patient is committed, so a 5xx here would only make the client's retry fail with "email exists"
+            billingAccountReconciler.enqueue(patient, e.getCause());
+        }
+        long suppressed = createdLogLimiter.tryAcquire();
+        if (suppressed >= 0) {
+            log.atInfo().setMessage("Patient created")
+                    .addKeyValue("patientId", patient.getId())
+                    .addKeyValue("suppressed", suppressed)
+                    .log();
+        }
 
         return PatientMapper.toPatientResponseDTO(patient);
     }
 
     @Override
     public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO) {
-        Patient patient = patientRepository.findById(id).orElseThrow(
-                () -> new PatientNotFoundException("Patient not found with id: " + id));
-
-        if (patientRepository.existsByEmailAndIdNot(patientRequestDTO.getEmail(), id)) {
-            throw new EmailAlreadyExistsException("A patient with this email address already exists: "
-                    + patientRequestDTO.getEmail());
+        // Look the patient up first so an unknown id never reserves the new email
+        if (!patientShardRouter.onShardOf(id, () -> patientRepository.existsById(id))) {
+            throw new PatientNotFoundException("Patient not found with id: " + id);
         }
+        String newEmail = patientRequestDTO.getEmail();
+        reserveEmail(newEmail, id);
 
-        patient.setName(patientRequestDTO.getName());
-        patient.setEmail(patientRequestDTO.getEmail());
-        patient.setAddress(patientRequestDTO.getAddress());
-        patient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
+        String[] oldEmail = new String[1];
+        Patient updatedPatient;
+        try {
+            updatedPatient = writePatient(id, () -> {
+                Patient patient = patientRepository.findById(id).orElseThrow(
+                        () -> new PatientNotFoundException("Patient not found with id: " + id));
+                oldEmail[0] = patient.getEmail();
+
+                patient.setName(patientRequestDTO.getName());
+                patient.setEmail(newEmail);
+                patient.setAddress(patientRequestDTO.getAddress());
+                patient.setDateOfBirth(PatientMapper.parseDate(patientRequestDTO.getDateOfBirth()));
+
+                return patientRepository.save(patient);
+            });
+        } catch (RuntimeException e) {
+            if (!newEmail.equals(oldEmail[0])) {
+                emailIndex.release(newEmail, id);
+            }
+            throw e;
+        }
 
-        Patient updatedPatient = patientRepository.save(patient);
+        if (!newEmail.equals(oldEmail[0])) {
+            emailIndex.release(oldEmail[0], id);
+        }
+        kafkaProducer.publishSnapshot(updatedPatient);
         return PatientMapper.toPatientResponseDTO(updatedPatient);
     }
 
     @Override
     public void deletePatient(UUID id) {
-        patientRepository.deleteById(id);
+        int deleted = writePatient(id, () -> patientRepository.deletePatientById(id));
+
+        if (deleted > 0) {
+            emailIndex.releasePatient(id);
+            kafkaProducer.publishTombstone(id);
+        }
+    }
+
+    private void reserveEmail(String email, UUID patientId) {
+        if (!emailIndex.reserve(email, patientId)) {
+            throw new EmailAlreadyExistsException("A patient with this email address already exists: " + email);
+        }
+    }
+
+    /**
+     * Runs a patient write in a transaction on the patient's shard and bumps the patients version. Without
+     * sharding the version row shares the database, so it changes in the same transaction as the data. With
+     * sharding it lives on the default shard and is bumped in a second transaction after the write. By then the
+     * patient is committed, so a failed bump is logged rather than thrown: the caller would otherwise release
+     * the email of a committed patient and answer 5xx, and a retry would create a second patient with the same
+     * email. Until the next write succeeds, the version, Last-Modified and ETag stay stale, and conditional
+     * GETs can answer 304 with the previous list (known gap).
+     */
+    private <T> T writePatient(UUID patientId, Supplier<T> write) {
+        if (patientShardRouter.shardCount() == 1) {
+            return patientShardRouter.onShardOf(patientId, () -> transactionTemplate.execute(status -> {
+                T result = write.get();
+                bumpPatientsVersion();
+                return result;
+            }));
+        }
+
+        T result = patientShardRouter.onShardOf(patientId, () -> transactionTemplate.execute(status -> write.get()));
+        try {
+            patientShardRouter.onShard(ShardContext.DEFAULT_SHARD, () -> transactionTemplate.execute(status -> {
+                bumpPatientsVersion();
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Patient {} was written but the patients version was not bumped: {}", patientId, e.getMessage());
+        }
+        return result;
+    }
+
+    private void bumpPatientsVersion() {
+        Instant now = Instant.now();
+        if (tableVersionRepository.bump(PATIENT_TABLE, now) == 0) {
+            tableVersionRepository.insert(PATIENT_TABLE, 1, now);
+        }
+    }
+
+    private TableVersion initPatientsVersion() {
+        Instant now = Instant.now();
+        try {
+            patientShardRouter.onShard(ShardContext.DEFAULT_SHARD, () -> transactionTemplate.execute(status -> {
+                tableVersionRepository.insert(PATIENT_TABLE, 0, now);
+                return null;
+            }));
+            return new TableVersion(PATIENT_TABLE, 0, now);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the row first
+            return tableVersionRepository.findById(PATIENT_TABLE).orElseThrow();
+        }
     }
 }
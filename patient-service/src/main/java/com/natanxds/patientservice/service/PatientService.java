@@ -1,14 +1,24 @@
 package com.natanxds.patientservice.service;
 
+import com.natanxds.patientservice.dto.PatientPageDTO;
 import com.natanxds.patientservice.dto.PatientRequestDTO;
 import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.dto.PatientsVersionDTO;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
 
 public interface PatientService {
     List<PatientResponseDTO> getPatients();
 
+    void writePatients(OutputStream out) throws IOException;
+
+    PatientPageDTO getPatientsPage(UUID after, int size);
+
+    PatientsVersionDTO getPatientsVersion();
+
     PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO);
 
     PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO);
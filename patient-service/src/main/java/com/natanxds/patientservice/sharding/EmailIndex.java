@@ -0,0 +1,20 @@
+package com.natanxds.patientservice.sharding;
+
+import java.util.UUID;
+
+/**
+ * Global email uniqueness. Patients live on different shards, so a unique column alone no longer
+ * prevents two shards from accepting the same address.
+ */
+public interface EmailIndex {
+
+    /**
+     * @return false if the email belongs to another patient
+     */
+    boolean reserve(String email, UUID patientId);
+
+    void release(String email, UUID patientId);
+
+    // Frees whatever email the patient holds, for deletes that never load the row
+    void releasePatient(UUID patientId);
+}
@@ -0,0 +1,100 @@
+package com.natanxds.patientservice.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Removes email reservations that no patient holds. Reserving an email and writing the patient are not one
+ * transaction, so a crash in between leaves a reservation behind: a create that never inserted the patient,
+ * a delete or email change that never released the old address. A reservation is stale when its patient is
+ * gone or now has another email. Only reservations older than {@code sweep-grace-ms} are considered, which
+ * keeps the sweep away from writes still in flight; {@link ShardedEmailIndex#reserve} renews the timestamp.
+ */
+@Component
+@ConditionalOnExpression("${patient.sharding.enabled:false} or ${patient.partitioning.enabled:false}")
+public class EmailIndexSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            EmailIndexSweeper.class);
+
+    private final ShardedEmailIndex emailIndex;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PatientShardRouter patientShardRouter;
+    private final Duration grace;
+    private final int batchSize;
+
+    public EmailIndexSweeper(ShardedEmailIndex emailIndex,
+                             DataSource dataSource,
+                             PatientShardRouter patientShardRouter,
+                             @Value("${patient.email-index.sweep-grace-ms:600000}") long graceMs,
+                             @Value("${patient.email-index.sweep-batch-size:1000}") int batchSize) {
+        this.emailIndex = emailIndex;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.patientShardRouter = patientShardRouter;
+        this.grace = Duration.ofMillis(graceMs);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${patient.email-index.sweep-interval-ms:3600000}",
+            initialDelayString = "${patient.email-index.sweep-interval-ms:3600000}")
+    public void sweep() {
+        Instant reservedBefore = Instant.now().minus(grace);
+        int checked = 0;
+        int released = 0;
+        try {
+            String after = null;
+            List<ShardedEmailIndex.Reservation> batch;
+            do {
+                batch = emailIndex.reservationsAfter(after, reservedBefore, batchSize);
+                for (ShardedEmailIndex.Reservation stale : stale(batch)) {
+                    if (emailIndex.releaseStale(stale, reservedBefore)) {
+                        released++;
+                    }
+                }
+                checked += batch.size();
+                after = batch.isEmpty() ? after : batch.getLast().email();
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Email index sweep failed after {} reservations: {}", checked, e.getMessage());
+        }
+        if (released > 0) {
+            log.info("Released {} stale email reservations of {} checked", released, checked);
+        }
+    }
+
+    // Reservations whose patient does not exist or holds a different email, looked up on each patient's shard
+    private List<ShardedEmailIndex.Reservation> stale(List<ShardedEmailIndex.Reservation> batch) {
+        Map<Integer, List<UUID>> idsByShard = new HashMap<>();
+        for (ShardedEmailIndex.Reservation reservation : batch) {
+            idsByShard.computeIfAbsent(patientShardRouter.shardFor(reservation.patientId()), shard -> new ArrayList<>())
+                    .add(reservation.patientId());
+        }
+
+        Map<UUID, String> currentEmails = new HashMap<>();
+        idsByShard.forEach((shard, ids) -> patientShardRouter.onShard(shard, () -> {
+            jdbcTemplate.query("select id, email from patient where id in (:ids)", Map.of("ids", ids),
+                    resultSet -> {
+                        currentEmails.put(resultSet.getObject(1, UUID.class), resultSet.getString(2));
+                    });
+            return null;
+        }));
+
+        return batch.stream()
+                .filter(reservation -> !reservation.email().equals(currentEmails.get(reservation.patientId())))
+                .toList();
+    }
+}
@@ -0,0 +1,74 @@
+package com.natanxds.patientservice.sharding;
+
+import org.natanxds.common.sharding.ConsistentHashRing;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+@Component
+public class PatientShardRouter {
+
+    private final int shardCount;
+
+    private final ConsistentHashRing ring;
+
+    public PatientShardRouter(ShardingProperties shardingProperties) {
+        if (shardingProperties.isEnabled()) {
+            this.shardCount = shardingProperties.getShards().size();
+            this.ring = new ConsistentHashRing(shardCount, shardingProperties.getVirtualNodes());
+        } else {
+            this.shardCount = 1;
+            this.ring = null;
+        }
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardFor(UUID patientId) {
+        return ring == null ? ShardContext.DEFAULT_SHARD : ring.shardFor(patientId);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return ShardContext.onShard(shard, action);
+    }
+
+    public <T> T onShardOf(UUID patientId, Supplier<T> action) {
+        return onShard(shardFor(patientId), action);
+    }
+
+    // Runs the action once per shard in parallel; results are in shard order
+    public <T> List<T> onAllShards(IntFunction<T> action) {
+        if (shardCount == 1) {
+            return List.of(onShard(ShardContext.DEFAULT_SHARD, () -> action.apply(ShardContext.DEFAULT_SHARD)));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                int target = shard;
+                futures.add(executor.submit(() -> onShard(target, () -> action.apply(target))));
+            }
+
+            List<T> results = new ArrayList<>(shardCount);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.natanxds.patientservice.sharding;
+
+import com.natanxds.patientservice.repository.PatientRepository;
+
+import java.util.UUID;
+
+// Single database: the unique email column already covers every patient
+public class RepositoryEmailIndex implements EmailIndex {
+
+    private final PatientRepository patientRepository;
+
+    public RepositoryEmailIndex(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+    }
+
+    @Override
+    public boolean reserve(String email, UUID patientId) {
+        return !patientRepository.existsByEmailAndIdNot(email, patientId);
+    }
+
+    @Override
+    public void release(String email, UUID patientId) {
+    }
+
+    @Override
+    public void releasePatient(UUID patientId) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.natanxds.patientservice.sharding;
+
+import java.util.function.Supplier;
+
+public final class ShardContext {
+
+    public static final int DEFAULT_SHARD = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = ThreadLocal.withInitial(() -> DEFAULT_SHARD);
+
+    private ShardContext() {
+    }
+
+    public static int current() {
+        return CURRENT.get();
+    }
+
+    // Must be entered before the transaction starts: the connection is bound when it begins
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        int previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.natanxds.patientservice.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ShardedEmailIndex implements EmailIndex {
+
+    public record Reservation(String email, UUID patientId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardedEmailIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean reserve(String email, UUID patientId) {
+        // Re-reserving our own email (e.g. an update that keeps it) is not a conflict; it restarts the
+        // reservation's sweep grace period, so EmailIndexSweeper never races an in-flight write
+        return jdbcTemplate.update("insert into patient_email_index (email, patient_id) values (?, ?) "
+                + "on conflict (email) do update set reserved_at = now() "
+                + "where patient_email_index.patient_id = excluded.patient_id", email, patientId) > 0;
+    }
+
+    @Override
+    public void release(String email, UUID patientId) {
+        jdbcTemplate.update("delete from patient_email_index where email = ? and patient_id = ?",
+                email, patientId);
+    }
+
+    @Override
+    public void releasePatient(UUID patientId) {
+        jdbcTemplate.update("delete from patient_email_index where patient_id = ?", patientId);
+    }
+
+    // Bulk releasePatient, for patients removed without going through the service (archived partitions)
+    public void releasePatients(List<UUID> patientIds) {
+        new NamedParameterJdbcTemplate(jdbcTemplate).update(
+                "delete from patient_email_index where patient_id in (:ids)", Map.of("ids", patientIds));
+    }
+
+    // Reservations made before the cutoff, in email order after the given email (null for the first page)
+    public List<Reservation> reservationsAfter(String afterEmail, Instant reservedBefore, int limit) {
+        return jdbcTemplate.query("select email, patient_id from patient_email_index "
+                        + "where email > ? and reserved_at < ? order by email limit ?",
+                (resultSet, row) -> new Reservation(resultSet.getString(1), resultSet.getObject(2, UUID.class)),
+                afterEmail == null ? "" : afterEmail, Timestamp.from(reservedBefore), limit);
+    }
+
+    // Deletes the reservation unless it was renewed after the cutoff
+    public boolean releaseStale(Reservation reservation, Instant reservedBefore) {
+        return jdbcTemplate.update("delete from patient_email_index "
+                        + "where email = ? and patient_id = ? and reserved_at < ?",
+                reservation.email(), reservation.patientId(), Timestamp.from(reservedBefore)) > 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.natanxds.patientservice.sharding;
+
+import com.natanxds.patientservice.repository.PatientRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "patient.sharding.enabled", havingValue = "true")
+    public ShardRoutingDataSource dataSource(ShardingProperties shardingProperties) {
+        if (shardingProperties.getShards().isEmpty()) {
+            throw new IllegalStateException("patient.sharding.enabled is set but no shards are configured");
+        }
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardingProperties.getShards().size(); shard++) {
+            HikariDataSource dataSource = hikari("patient-shard-" + shard, shardingProperties.getShards().get(shard));
+            new ResourceDatabasePopulator(new ClassPathResource("sharding/patient-shard-schema.sql"))
+                    .execute(dataSource);
+            shards.add(dataSource);
+        }
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(shards);
+        routingDataSource.afterPropertiesSet();
+        return routingDataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "patient.sharding.enabled", havingValue = "true")
+    public HikariDataSource emailIndexDataSource(ShardingProperties shardingProperties) {
+        HikariDataSource dataSource = hikari("patient-email-index", shardingProperties.getEmailIndex());
+        new ResourceDatabasePopulator(new ClassPathResource("sharding/email-index-schema.sql"))
+                .execute(dataSource);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "patient.sharding.enabled", havingValue = "true")
+    public ShardedEmailIndex shardedEmailIndex(@Qualifier("emailIndexDataSource") DataSource emailIndexDataSource) {
+        return new ShardedEmailIndex(new JdbcTemplate(emailIndexDataSource));
+    }
+
+    @Bean
+    @ConditionalOnExpression("!${patient.sharding.enabled:false} and !${patient.partitioning.enabled:false}")
+    public EmailIndex repositoryEmailIndex(PatientRepository patientRepository) {
+        return new RepositoryEmailIndex(patientRepository);
+    }
+
+    // A partitioned patient table cannot carry a unique email column; the index table lives in the same database
+    @Bean
+    @ConditionalOnExpression("!${patient.sharding.enabled:false} and ${patient.partitioning.enabled:false}")
+    public ShardedEmailIndex localEmailIndex(DataSource dataSource) {
+        return new ShardedEmailIndex(new JdbcTemplate(dataSource));
+    }
+
+    private static HikariDataSource hikari(String poolName, ShardingProperties.DataSourceSettings settings) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(poolName);
+        dataSource.setJdbcUrl(settings.getUrl());
+        dataSource.setUsername(settings.getUsername());
+        dataSource.setPassword(settings.getPassword());
+        dataSource.setMaximumPoolSize(settings.getMaximumPoolSize());
+        return dataSource;
+    }
+}
@@ -0,0 +1,28 @@
+package com.natanxds.patientservice.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "patient.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    private int virtualNodes = 128;
+
+    private List<DataSourceSettings> shards = new ArrayList<>();
+
+    private DataSourceSettings emailIndex = new DataSourceSettings();
+
+    @Data
+    public static class DataSourceSettings {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,184 @@
+package com.natanxds.patientservice.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.natanxds.patientservice.dto.PatientRequestDTO;
+import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.grpc.BillingServiceGrpcClient;
+import com.natanxds.patientservice.kafka.KafkaProducer;
+import com.natanxds.patientservice.mapper.PatientJsonWriter;
+import com.natanxds.patientservice.mapper.PatientMapper;
+import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.repository.PatientRepository;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs synthetic, read-only traffic through the request path before the instance takes real traffic:
+ * JSON and entity mapping, the repository's prepared statements on every shard, a page request through
+ * the local HTTP stack, billing gRPC health checks and Kafka metadata plus record serialization.
+ * <p>
+ * Spring Boot reports readiness ({@code /actuator/health/readiness}) only after every
+ * {@link ApplicationRunner} has returned, so the instance stays out of rotation until the rounds below
+ * stop getting faster: {@code stable-rounds} consecutive rounds within {@code tolerance} of the previous
+ * one, or {@code max-duration-ms} at most. A step that fails (e.g. billing is down) is dropped rather than
+ * holding readiness back; the circuit breakers cover those dependencies at runtime.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class PatientServiceWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(
+            PatientServiceWarmup.class);
+
+    private final PatientRepository patientRepository;
+    private final PatientShardRouter patientShardRouter;
+    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final KafkaProducer kafkaProducer;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final int iterationsPerRound;
+    private final int stableRounds;
+    private final double tolerance;
+    private final long maxDurationMs;
+
+    public PatientServiceWarmup(PatientRepository patientRepository,
+                                PatientShardRouter patientShardRouter,
+                                BillingServiceGrpcClient billingServiceGrpcClient,
+                                KafkaProducer kafkaProducer,
+                                ObjectMapper objectMapper,
+                                Environment environment,
+                                @Value("${patient.warmup.iterations-per-round:200}") int iterationsPerRound,
+                                @Value("${patient.warmup.stable-rounds:3}") int stableRounds,
+                                @Value("${patient.warmup.tolerance:0.1}") double tolerance,
+                                @Value("${patient.warmup.max-duration-ms:60000}") long maxDurationMs) {
+        this.patientRepository = patientRepository;
+        this.patientShardRouter = patientShardRouter;
+        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.kafkaProducer = kafkaProducer;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.iterationsPerRound = iterationsPerRound;
+        this.stableRounds = stableRounds;
+        this.tolerance = tolerance;
+        this.maxDurationMs = maxDurationMs;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Step> steps = steps();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+        long firstRound = -1;
+        long previousRound = -1;
+        int stable = 0;
+        int rounds = 0;
+
+        while (!steps.isEmpty() && stable < stableRounds && System.nanoTime() < deadline) {
+            long roundNanos = runRound(steps);
+            rounds++;
+            if (firstRound < 0) {
+                firstRound = roundNanos;
+            } else if (Math.abs(roundNanos - previousRound) <= tolerance * previousRound) {
+                stable++;
+            } else {
+                stable = 0;
+            }
+            previousRound = roundNanos;
+        }
+
+        log.info("Warm-up finished after {} rounds in {} ms ({}): {} us per iteration, {} us in the first round",
+                rounds, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                stable >= stableRounds ? "stable" : "time limit or no steps left",
+                TimeUnit.NANOSECONDS.toMicros(Math.max(0, previousRound) / iterationsPerRound),
+                TimeUnit.NANOSECONDS.toMicros(Math.max(0, firstRound) / iterationsPerRound));
+    }
+
+    // Runs every step iterationsPerRound times and returns the time taken by the steps that completed
+    private long runRound(List<Step> steps) {
+        long total = 0;
+        for (Iterator<Step> iterator = steps.iterator(); iterator.hasNext(); ) {
+            Step step = iterator.next();
+            long start = System.nanoTime();
+            try {
+                for (int i = 0; i < iterationsPerRound; i++) {
+                    step.action().run();
+                }
+                total += System.nanoTime() - start;
+            } catch (Exception e) {
+                log.warn("Warm-up step {} failed and is skipped: {}", step.name(), e.getMessage());
+                iterator.remove();
+            }
+        }
+        return total;
+    }
+
+    private List<Step> steps() {
+        Patient sample = new Patient(UUID.randomUUID(), "Warm Up", "warm-up@example.invalid",
+                "1 Warm-up Street", LocalDate.of(1980, 1, 1), LocalDate.now());
+        PatientRequestDTO request = new PatientRequestDTO();
+        request.setName(sample.getName());
+        request.setEmail(sample.getEmail());
+        request.setAddress(sample.getAddress());
+        request.setDateOfBirth(sample.getDateOfBirth().toString());
+        request.setRegisteredDate(sample.getRegisteredDate().toString());
+
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step("mapping", () -> {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            Patient patient = PatientMapper.toEntity(objectMapper.readValue(json, PatientRequestDTO.class));
+            patient.setId(sample.getId());
+            PatientResponseDTO response = PatientMapper.toPatientResponseDTO(patient);
+            objectMapper.writeValueAsBytes(response);
+            try (PatientJsonWriter writer = new PatientJsonWriter(objectMapper.getFactory(),
+                    OutputStream.nullOutputStream())) {
+                writer.write(patient);
+            }
+        }));
+        steps.add(new Step("repository", () -> patientShardRouter.onAllShards(shard -> {
+            UUID id = UUID.randomUUID();
+            patientRepository.existsByEmail(sample.getEmail());
+            patientRepository.existsByEmailAndIdNot(sample.getEmail(), id);
+            patientRepository.findById(id);
+            return patientRepository.findByIdGreaterThanOrderByIdAsc(id, Limit.of(1));
+        })));
+
+        // Absent when the web server is off, e.g. for a command-line export
+        String port = environment.getProperty("local.server.port");
+        if (port != null) {
+            RestClient restClient = RestClient.create("http://localhost:" + port);
+            steps.add(new Step("http", () -> restClient.get()
+                    .uri("/api/v1/patients/page?size=1&after={after}", UUID.randomUUID())
+                    .retrieve()
+                    .toBodilessEntity()));
+        }
+
+        steps.add(new Step("billing-grpc", billingServiceGrpcClient::checkHealth));
+        steps.add(new Step("kafka", () -> kafkaProducer.warmUp(sample)));
+        return steps;
+    }
+
+    private record Step(String name, Action action) {
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,38 @@
+-- Owned here rather than by Hibernate (ddl-auto=none): PatientPartitionManager turns patient into a
+-- partitioned table, which cannot carry the unique email constraint Hibernate's update would re-add.
+-- Email uniqueness then moves to patient_email_index (sharding/email-index-schema.sql).
+CREATE TABLE IF NOT EXISTS patient
+(
+    id              UUID PRIMARY KEY,
+    name            VARCHAR(255)        NOT NULL,
+    email           VARCHAR(255) UNIQUE NOT NULL,
+    address         VARCHAR(255)        NOT NULL,
+    date_of_birth   DATE                NOT NULL,
+    registered_date DATE                NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS table_version
+(
+    table_name    VARCHAR(255) PRIMARY KEY,
+    version       BIGINT                   NOT NULL,
+    last_modified TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_record
+(
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash    VARCHAR(255)             NOT NULL,
+    response_body   VARCHAR(4096),
+    created_at      TIMESTAMP WITH TIME ZONE NOT NULL
+);
+-- response_body is null while the request that claimed the key runs; tables created before claims existed
+ALTER TABLE idempotency_record ALTER COLUMN response_body DROP NOT NULL;
+
+CREATE TABLE IF NOT EXISTS pending_billing_account
+(
+    patient_id UUID PRIMARY KEY,
+    name       VARCHAR(255)             NOT NULL,
+    email      VARCHAR(255)             NOT NULL,
+    queued_at  TIMESTAMP WITH TIME ZONE NOT NULL,
+    attempts   INTEGER                  NOT NULL
+);
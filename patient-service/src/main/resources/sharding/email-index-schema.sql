@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS patient_email_index
+(
+    email       VARCHAR(255) PRIMARY KEY,
+    patient_id  UUID                     NOT NULL,
+    reserved_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- Tables created before reservations were timestamped
+ALTER TABLE patient_email_index ADD COLUMN IF NOT EXISTS reserved_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS patient_email_index_patient_id_idx ON patient_email_index (patient_id);
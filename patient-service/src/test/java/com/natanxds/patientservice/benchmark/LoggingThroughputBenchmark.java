@@ -0,0 +1,128 @@
+package com.natanxds.patientservice.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.natanxds.common.logging.LogRateLimiter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request-thread throughput of the "patient created" log line under contention, per logging setup:
+ * <ul>
+ *     <li>{@code current}: synchronous file appender, whole entity formatted into the message</li>
+ *     <li>{@code sync}: synchronous appender, id-only key-value fields</li>
+ *     <li>{@code async}: the AsyncAppender from logback-base.xml in front of the same file appender</li>
+ *     <li>{@code asyncRateLimited}: async plus the {@link LogRateLimiter} used on request paths</li>
+ * </ul>
+ * With {@code neverBlock} the async modes drop INFO events once the queue is mostly full, so their score is
+ * what callers see, not how many lines reach the file.
+ * Results: not measured yet. Ops/s per mode are still outstanding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LoggingThroughputBenchmark {
+
+    @Param({"current", "sync", "async", "asyncRateLimited"})
+    private String setup;
+
+    private final UUID patientId = UUID.randomUUID();
+    private final String name = "John Doe";
+    private final String email = "john.doe@example.com";
+    private final String address = "123 Main St, Springfield";
+    private final LocalDate dateOfBirth = LocalDate.of(1985, 6, 15);
+
+    private LoggerContext context;
+    private Logger logger;
+    private LogRateLimiter rateLimiter;
+    private Path logFile;
+
+    @Setup
+    public void setup() throws IOException {
+        logFile = Files.createTempFile("logging-benchmark", ".log");
+        context = new LoggerContext();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%15.15t] %-40.40logger{39} : %m %kvp%n");
+        encoder.start();
+
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(logFile.toString());
+        file.setEncoder(encoder);
+        file.start();
+
+        Appender<ILoggingEvent> appender = file;
+        if (setup.startsWith("async")) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.setIncludeCallerData(false);
+            async.addAppender(file);
+            async.start();
+            appender = async;
+        }
+
+        logger = context.getLogger("com.natanxds.patientservice.service.Impl.PatientServiceImpl");
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+        rateLimiter = new LogRateLimiter(Duration.ofSeconds(1));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.stop();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public void patientCreated() {
+        switch (setup) {
+            case "current" -> logger.info("Patient created: Patient(id={}, name={}, email={}, address={}, "
+                    + "dateOfBirth={}, registeredDate={})", patientId, name, email, address, dateOfBirth, dateOfBirth);
+            case "asyncRateLimited" -> {
+                long suppressed = rateLimiter.tryAcquire();
+                if (suppressed >= 0) {
+                    logPatientCreated(suppressed);
+                }
+            }
+            default -> logPatientCreated(0);
+        }
+    }
+
+    private void logPatientCreated(long suppressed) {
+        logger.atInfo().setMessage("Patient created")
+                .addKeyValue("patientId", patientId)
+                .addKeyValue("suppressed", suppressed)
+                .log();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoggingThroughputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.natanxds.patientservice.benchmark;
+
+import com.natanxds.patientservice.mapper.PatientCsvWriter;
+import com.natanxds.patientservice.mapper.PatientParquetWriter;
+import com.natanxds.patientservice.mapper.PatientWriter;
+import com.natanxds.patientservice.model.Patient;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second the export writers sustain on their own, i.e. the ceiling for
+ * {@code PatientExporter}'s single writer thread; the end-to-end rate against a database is logged by every
+ * export. The score is rows per second.
+ * Results: not measured yet. CSV and Parquet rows/s, and an end-to-end export against a database, are still
+ * outstanding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientExportBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"csv", "parquet-snappy", "parquet-zstd"})
+    private String format;
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private List<Patient> patients;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        patients = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            patients.add(new Patient(
+                    new UUID(random.nextLong(), random.nextLong()),
+                    "Patient " + random.nextInt(5000),
+                    "patient" + i + "@example.com",
+                    random.nextInt(1000) + " Main St, Springfield",
+                    LocalDate.of(1940 + random.nextInt(80), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    LocalDate.of(2024, 1 + random.nextInt(12), 1)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void export() throws IOException {
+        try (PatientWriter writer = open()) {
+            for (Patient patient : patients) {
+                writer.write(patient);
+            }
+        }
+    }
+
+    private PatientWriter open() throws IOException {
+        return switch (format) {
+            case "csv" -> new PatientCsvWriter(out);
+            case "parquet-snappy" -> new PatientParquetWriter(out, CompressionCodecName.SNAPPY, 16 << 20);
+            default -> new PatientParquetWriter(out, CompressionCodecName.ZSTD, 16 << 20);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatientExportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.natanxds.patientservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.mapper.PatientJsonWriter;
+import com.natanxds.patientservice.mapper.PatientMapper;
+import com.natanxds.patientservice.model.Patient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the DTO list path with {@link PatientJsonWriter} for one response of {@code size} patients.
+ * Run {@code main} and divide {@code gc.alloc.rate.norm} by {@code size} for bytes per patient.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientSerializationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private List<Patient> patients;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        patients = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            patients.add(new Patient(
+                    new UUID(random.nextLong(), random.nextLong()),
+                    "Patient " + i,
+                    "patient" + i + "@example.com",
+                    i + " Main St, Springfield",
+                    LocalDate.of(1940 + random.nextInt(80), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    LocalDate.of(2024, 1, 1)));
+        }
+    }
+
+    @Benchmark
+    public void dtoList() throws IOException {
+        List<PatientResponseDTO> dtos = patients.stream()
+                .map(PatientMapper::toPatientResponseDTO)
+                .toList();
+        objectMapper.writeValue(out, dtos);
+    }
+
+    @Benchmark
+    public void streamingWriter() throws IOException {
+        try (PatientJsonWriter writer = new PatientJsonWriter(objectMapper.getFactory(), out)) {
+            for (Patient patient : patients) {
+                writer.write(patient);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatientSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.natanxds.patientservice.controller;
+
+import com.natanxds.patientservice.dto.PatientsVersionDTO;
+import com.natanxds.patientservice.export.PatientExporter;
+import com.natanxds.patientservice.service.IdempotencyService;
+import com.natanxds.patientservice.service.PatientService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PatientControllerTest {
+
+    private static final Instant LAST_MODIFIED = Instant.parse("2025-01-01T12:00:00Z");
+
+    private final PatientService patientService = mock(PatientService.class);
+    private final PatientController controller = new PatientController(patientService,
+            mock(IdempotencyService.class), mock(PatientExporter.class), 5);
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/patients");
+
+    @BeforeEach
+    void currentVersion() {
+        when(patientService.getPatientsVersion()).thenReturn(new PatientsVersionDTO(7, LAST_MODIFIED));
+    }
+
+    @Test
+    void listCarriesTheVersionAsETagAndLastModified() {
+        ResponseEntity<StreamingResponseBody> response = getPatients();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"7\"", response.getHeaders().getETag());
+        assertEquals(LAST_MODIFIED.toEpochMilli(), response.getHeaders().getLastModified());
+        assertEquals("max-age=5", response.getHeaders().getCacheControl());
+        assertEquals(HttpHeaders.AUTHORIZATION, response.getHeaders().getVary().getFirst());
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    void matchingETagIsNotModified() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"7\"");
+
+        ResponseEntity<StreamingResponseBody> response = getPatients();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void staleETagGetsTheList() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"6\"");
+
+        assertEquals(HttpStatus.OK, getPatients().getStatusCode());
+    }
+
+    @Test
+    void unchangedSinceIfModifiedSinceIsNotModified() {
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED.toEpochMilli());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, getPatients().getStatusCode());
+    }
+
+    @Test
+    void modifiedSinceIfModifiedSinceGetsTheList() {
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED.minusSeconds(60).toEpochMilli());
+
+        assertEquals(HttpStatus.OK, getPatients().getStatusCode());
+    }
+
+    private ResponseEntity<StreamingResponseBody> getPatients() {
+        return controller.getPatients(new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.natanxds.patientservice.kafka;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KafkaSpillLogTest {
+
+    private static final int SEGMENT_BYTES = 1024;
+    private static final int HEADER_BYTES = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsSurviveAReopen() throws IOException {
+        KafkaSpillLog spillLog = open();
+        assertTrue(spillLog.isEmpty());
+        spillLog.append(bytes("a"));
+        spillLog.append(bytes("bb"));
+        spillLog.close();
+
+        KafkaSpillLog reopened = open();
+        assertFalse(reopened.isEmpty());
+        assertEquals(List.of("a", "bb"), strings(reopened.peek(10)));
+    }
+
+    @Test
+    void recoveryTruncatesAtATornRecord() throws IOException {
+        KafkaSpillLog spillLog = open();
+        spillLog.append(bytes("first"));
+        spillLog.append(bytes("second"));
+        spillLog.append(bytes("third"));
+        spillLog.close();
+
+        // A crash mid-append left the third record's payload half written
+        int third = 2 * HEADER_BYTES + "first".length() + "second".length();
+        overwrite(third + HEADER_BYTES, bytes("XX"));
+
+        KafkaSpillLog reopened = open();
+        assertEquals(List.of("first", "second"), strings(reopened.peek(10)));
+
+        // New records go to a fresh segment, after the surviving ones
+        reopened.append(bytes("fourth"));
+        assertEquals(List.of("first", "second", "fourth"), strings(reopened.peek(10)));
+    }
+
+    @Test
+    void recoveryStopsAtALengthPastTheSegmentEnd() throws IOException {
+        KafkaSpillLog spillLog = open();
+        spillLog.append(bytes("kept"));
+        spillLog.append(bytes("lost"));
+        spillLog.close();
+
+        overwrite(HEADER_BYTES + "kept".length(), new byte[]{0, 0, 0x10, 0});
+
+        assertEquals(List.of("kept"), strings(open().peek(10)));
+    }
+
+    @Test
+    void committedRecordsAreNotReplayedAfterAReopen() throws IOException {
+        KafkaSpillLog spillLog = open();
+        spillLog.append(bytes("a"));
+        spillLog.append(bytes("b"));
+        spillLog.commit(spillLog.peek(1).next());
+        spillLog.close();
+
+        KafkaSpillLog reopened = open();
+        KafkaSpillLog.Batch batch = reopened.peek(10);
+        assertEquals(List.of("b"), strings(batch));
+        reopened.commit(batch.next());
+        assertTrue(reopened.isEmpty());
+        reopened.close();
+
+        assertTrue(open().isEmpty());
+    }
+
+    @Test
+    void readsAcrossSegmentsAndDeletesDrainedOnes() throws IOException {
+        KafkaSpillLog spillLog = open();
+        byte[] payload = new byte[300];
+        for (int i = 0; i < 7; i++) {
+            payload[0] = (byte) i;
+            spillLog.append(payload.clone());
+        }
+        assertTrue(segmentCount() > 2);
+
+        KafkaSpillLog.Batch batch = spillLog.peek(10);
+        assertEquals(7, batch.records().size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i, batch.records().get(i)[0]);
+        }
+        spillLog.commit(batch.next());
+        assertTrue(spillLog.isEmpty());
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    void instancesSharingADirectoryEachLockTheirOwnSlot() throws IOException {
+        KafkaSpillLog first = open();
+        KafkaSpillLog second = open();
+        first.append(bytes("first"));
+        second.append(bytes("second"));
+
+        assertEquals(List.of("first"), strings(first.peek(10)));
+        assertEquals(List.of("second"), strings(second.peek(10)));
+        assertTrue(Files.isDirectory(directory.resolve("slot-0")));
+        assertTrue(Files.isDirectory(directory.resolve("slot-1")));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void aNewInstanceAdoptsAStoppedInstancesUndeliveredRecords() throws IOException {
+        KafkaSpillLog drained = open();
+        KafkaSpillLog stopped = open();
+        stopped.append(bytes("pending"));
+        drained.close();
+        stopped.close();
+
+        // slot-0 was closed empty and cleared, so the slot still holding records is taken first
+        KafkaSpillLog replacement = open();
+        assertEquals(List.of("pending"), strings(replacement.peek(10)));
+    }
+
+    private KafkaSpillLog open() {
+        return new KafkaSpillLog(directory.toString(), SEGMENT_BYTES);
+    }
+
+    private void overwrite(long offset, byte[] data) throws IOException {
+        try (RandomAccessFile segment = new RandomAccessFile(
+                directory.resolve("slot-0").resolve(String.format("%020d.log", 0)).toFile(), "rw")) {
+            segment.seek(offset);
+            segment.write(data);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("slot-0"))) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(KafkaSpillLog.Batch batch) {
+        return batch.records().stream().map(record -> new String(record, StandardCharsets.UTF_8)).toList();
+    }
+}
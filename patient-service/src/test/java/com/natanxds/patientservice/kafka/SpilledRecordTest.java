@@ -0,0 +1,63 @@
+package com.natanxds.patientservice.kafka;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import patient.events.PatientEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SpilledRecordTest {
+
+    @Test
+    void roundTripsVersionedSnapshotsAndTombstones() throws Exception {
+        SpilledRecord snapshot = new SpilledRecord(KafkaProducer.SNAPSHOT_TOPIC, "p1", new byte[]{1, 2, 3}, 42);
+        SpilledRecord decoded = SpilledRecord.decode(snapshot.encode());
+        assertEquals(snapshot.topic(), decoded.topic());
+        assertEquals("p1", decoded.key());
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.value());
+        assertEquals(42, decoded.version());
+
+        SpilledRecord tombstone = SpilledRecord.decode(
+                new SpilledRecord(KafkaProducer.SNAPSHOT_TOPIC, "p1", null, 43).encode());
+        assertNull(tombstone.value());
+        assertEquals(43, tombstone.version());
+    }
+
+    @Test
+    void versionTravelsInAHeader() {
+        ProducerRecord<String, byte[]> record = new SpilledRecord(KafkaProducer.SNAPSHOT_TOPIC, "p1", null, 42)
+                .toProducerRecord();
+        assertEquals(42, ByteBuffer.wrap(record.headers().lastHeader(KafkaProducer.VERSION_HEADER).value()).getLong());
+
+        ProducerRecord<String, byte[]> event = new SpilledRecord(KafkaProducer.TOPIC, "p1", new byte[]{1},
+                SpilledRecord.NO_VERSION).toProducerRecord();
+        assertNull(event.headers().lastHeader(KafkaProducer.VERSION_HEADER));
+    }
+
+    @Test
+    void decodesEntriesWrittenBeforeTheVersion() throws Exception {
+        byte[] topic = KafkaProducer.SNAPSHOT_TOPIC.getBytes(StandardCharsets.UTF_8);
+        byte[] legacy = ByteBuffer.allocate(1 + 2 + topic.length + 2 + 2 + 4)
+                .put((byte) 0)
+                .putShort((short) topic.length).put(topic)
+                .putShort((short) 2).put("p1".getBytes(StandardCharsets.UTF_8))
+                .putInt(-1)
+                .array();
+        SpilledRecord decoded = SpilledRecord.decode(legacy);
+        assertEquals(KafkaProducer.SNAPSHOT_TOPIC, decoded.topic());
+        assertEquals("p1", decoded.key());
+        assertNull(decoded.value());
+        assertEquals(SpilledRecord.NO_VERSION, decoded.version());
+
+        byte[] bareEvent = PatientEvent.newBuilder().setPatientId("p2").build().toByteArray();
+        SpilledRecord event = SpilledRecord.decode(bareEvent);
+        assertEquals(KafkaProducer.TOPIC, event.topic());
+        assertEquals("p2", event.key());
+        assertEquals(SpilledRecord.NO_VERSION, event.version());
+    }
+}
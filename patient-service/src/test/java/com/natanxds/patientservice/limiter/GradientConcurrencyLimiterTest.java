@@ -0,0 +1,115 @@
+package com.natanxds.patientservice.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GradientConcurrencyLimiterTest {
+
+    private static final long BASELINE_RTT = 1_000_000;
+
+    @Test
+    void rejectsBeyondTheLimit() {
+        GradientConcurrencyLimiter limiter = limiter(2, 100);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        // Below minWindowSamples, so no window closes and the limit stays put
+        limiter.release(BASELINE_RTT);
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void firstWindowHalvesTheLimitToProbeTheBaseline() {
+        GradientConcurrencyLimiter limiter = limiter(20, 1);
+        saturatedWindow(limiter, BASELINE_RTT);
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0.001, limiter.getNoLoadRttSeconds(), 1e-12);
+    }
+
+    @Test
+    void growsWhileLatencyStaysAtTheBaselineAndShrinksWhenRequestsQueue() {
+        GradientConcurrencyLimiter limiter = limiter(20, 1);
+        for (int i = 0; i < 30; i++) {
+            saturatedWindow(limiter, BASELINE_RTT);
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        int previous = grown;
+        for (int i = 0; i < 30; i++) {
+            saturatedWindow(limiter, 10 * BASELINE_RTT);
+            assertTrue(limiter.getLimit() <= previous, "limit rose to " + limiter.getLimit());
+            previous = limiter.getLimit();
+        }
+        // limit * 0.5 + sqrt(limit) settles at 4
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void staysWithinMinAndMax() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(20, 8, 25, 1.5, 1.0, 0, 1, 1000);
+        for (int i = 0; i < 30; i++) {
+            saturatedWindow(limiter, BASELINE_RTT);
+        }
+        assertEquals(25, limiter.getLimit());
+        for (int i = 0; i < 30; i++) {
+            saturatedWindow(limiter, 10 * BASELINE_RTT);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void lightlyUsedWindowsLeaveTheLimitAlone() {
+        GradientConcurrencyLimiter limiter = limiter(20, 1);
+        saturatedWindow(limiter, BASELINE_RTT);
+        drain(limiter);
+        int limit = limiter.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(10 * BASELINE_RTT);
+        }
+        assertEquals(limit, limiter.getLimit());
+    }
+
+    @Test
+    void periodicProbeRemeasuresASlowerBaseline() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(20, 1, 1000, 1.5, 1.0, 0, 1, 10);
+        for (int window = 1; window <= 3; window++) {
+            saturatedWindow(limiter, BASELINE_RTT);
+        }
+        for (int window = 4; window <= 12; window++) {
+            saturatedWindow(limiter, 5 * BASELINE_RTT);
+        }
+        assertEquals(0.001, limiter.getNoLoadRttSeconds(), 1e-12);
+
+        // Window 11 halved the limit, window 13 measures the baseline again
+        saturatedWindow(limiter, 5 * BASELINE_RTT);
+        assertEquals(0.005, limiter.getNoLoadRttSeconds(), 1e-12);
+    }
+
+    // Every sample closes a window (no minimum duration, one sample), and probes only happen on window 1
+    private static GradientConcurrencyLimiter limiter(int initialLimit, int minWindowSamples) {
+        return new GradientConcurrencyLimiter(initialLimit, 1, 1000, 1.5, 1.0, 0, minWindowSamples, 1000);
+    }
+
+    // Fills every permit, then completes one request, so the window saw the limit fully used
+    private static void saturatedWindow(GradientConcurrencyLimiter limiter, long rttNanos) {
+        while (limiter.tryAcquire()) {
+            // Acquire up to the limit
+        }
+        limiter.release(rttNanos);
+    }
+
+    private static void drain(GradientConcurrencyLimiter limiter) {
+        while (limiter.getInFlight() > 0) {
+            limiter.release(BASELINE_RTT);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.natanxds.patientservice.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientJsonWriterTest {
+
+    private final char[] buffer = new char[36];
+
+    @Test
+    void formatsDatesLikeLocalDate() {
+        for (LocalDate date : new LocalDate[]{
+                LocalDate.of(2024, 2, 29), LocalDate.of(1900, 1, 1), LocalDate.of(0, 1, 1),
+                LocalDate.of(9999, 12, 31), LocalDate.of(-1, 6, 15), LocalDate.of(10_000, 1, 1),
+                LocalDate.MIN, LocalDate.MAX}) {
+            assertEquals(date.toString(), new String(buffer, 0, PatientJsonWriter.formatDate(date, buffer)));
+        }
+    }
+
+    @Test
+    void formatsUuidsLikeUuid() {
+        for (UUID id : new UUID[]{new UUID(0, 0), new UUID(-1, -1), UUID.randomUUID()}) {
+            assertEquals(id.toString(), new String(buffer, 0, PatientJsonWriter.formatUuid(id, buffer)));
+        }
+    }
+
+    @Test
+    void dateCacheReturnsParsedAndFormattedValues() {
+        for (int day = 0; day < 200_000; day += 7) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertEquals(date, PatientMapper.parseDate(date.toString()));
+            assertEquals(date.toString(), PatientMapper.formatDate(date));
+        }
+    }
+}
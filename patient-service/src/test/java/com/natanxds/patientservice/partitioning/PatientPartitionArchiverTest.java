@@ -0,0 +1,77 @@
+package com.natanxds.patientservice.partitioning;
+
+import com.natanxds.patientservice.kafka.KafkaProducer;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import com.natanxds.patientservice.sharding.ShardedEmailIndex;
+import com.natanxds.patientservice.sharding.ShardingProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PatientPartitionArchiverTest {
+
+    private final ShardedEmailIndex emailIndex = mock(ShardedEmailIndex.class);
+    private final KafkaProducer kafkaProducer = mock(KafkaProducer.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void onlyPartitionsBeforeTheOldestKeptMonthExpire() {
+        List<String> attached = List.of("patient_p2022_12", "patient_p2023_01", "patient_p2023_02");
+
+        assertEquals(List.of("patient_p2022_12"), PatientPartitionArchiver.expired(attached, YearMonth.of(2023, 1)));
+    }
+
+    @Test
+    void releaseTombstonesThenFreesEmailsBatchByBatch() {
+        List<UUID> first = List.of(id(1), id(2));
+        List<UUID> second = List.of(id(3));
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any(), any())).thenReturn(first, second);
+
+        assertEquals(3, archiver(2).release(jdbcTemplate, "patient_p2022_12"));
+
+        InOrder order = inOrder(kafkaProducer, emailIndex);
+        order.verify(kafkaProducer).publishTombstones(eq(first), anyLong());
+        order.verify(emailIndex).releasePatients(first);
+        order.verify(kafkaProducer).publishTombstones(eq(second), anyLong());
+        order.verify(emailIndex).releasePatients(second);
+        // The next page starts after the last id of a full one
+        verify(jdbcTemplate).queryForList(anyString(), eq(UUID.class), eq(id(2)), eq(2));
+    }
+
+    @Test
+    void emailsStayReservedWhenTombstonesFail() {
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any(), any())).thenReturn(List.of(id(1)));
+        doThrow(new IllegalStateException("Could not publish patient tombstones"))
+                .when(kafkaProducer).publishTombstones(any(), anyLong());
+
+        assertThrows(IllegalStateException.class, () -> archiver(2).release(jdbcTemplate, "patient_p2022_12"));
+        verify(emailIndex, never()).releasePatients(any());
+    }
+
+    private PatientPartitionArchiver archiver(int releaseBatchSize) {
+        return new PatientPartitionArchiver(mock(DataSource.class), new PatientShardRouter(new ShardingProperties()),
+                emailIndex, kafkaProducer, 24, "archive", releaseBatchSize, 10_000);
+    }
+
+    private static UUID id(long value) {
+        return new UUID(0, value);
+    }
+}
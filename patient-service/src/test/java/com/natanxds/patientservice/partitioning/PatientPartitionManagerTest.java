@@ -0,0 +1,32 @@
+package com.natanxds.patientservice.partitioning;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientPartitionManagerTest {
+
+    @Test
+    void partitionNamesArePaddedSoTheyMatchTheArchiverPattern() {
+        assertEquals("patient_p2025_03", PatientPartitionManager.partitionName(YearMonth.of(2025, 3)));
+        assertEquals("patient_p0999_12", PatientPartitionManager.partitionName(YearMonth.of(999, 12)));
+    }
+
+    @Test
+    void upcomingMonthsIncludeTheCurrentOneAndCrossTheYear() {
+        assertEquals(List.of(YearMonth.of(2025, 11), YearMonth.of(2025, 12), YearMonth.of(2026, 1)),
+                PatientPartitionManager.monthsToPartition(List.of(), YearMonth.of(2025, 11), 2));
+    }
+
+    @Test
+    void monthsStrandedInTheDefaultPartitionGetAPartitionToo() {
+        // A back-dated registration, and one for a month that is partitioned anyway
+        List<YearMonth> inDefault = List.of(YearMonth.of(2019, 6), YearMonth.of(2025, 12));
+
+        assertEquals(List.of(YearMonth.of(2019, 6), YearMonth.of(2025, 12), YearMonth.of(2025, 11)),
+                PatientPartitionManager.monthsToPartition(inDefault, YearMonth.of(2025, 11), 1));
+    }
+}
@@ -0,0 +1,91 @@
+package com.natanxds.patientservice.reconciliation;
+
+import billing.BillingAccountChunk;
+import billing.RangeDigest;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.natanxds.common.digest.IdSetDigest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BillingReconciliationJoinTest {
+
+    // In Postgres' unsigned order; the last two sort after the first despite their negative high bits
+    private static final UUID P1 = new UUID(0x1000_0000_0000_0000L, 1);
+    private static final UUID P2 = new UUID(0x1000_0000_0000_0000L, -1);
+    private static final UUID P3 = new UUID(0x8000_0000_0000_0000L, 0);
+    private static final UUID P4 = new UUID(-1, -1);
+
+    @Test
+    void reportsPatientsWithoutAccountsAndAccountsWithoutPatients() {
+        UUID orphan = new UUID(0x9000_0000_0000_0000L, 0);
+        List<Integer> missing = new ArrayList<>();
+
+        long orphaned = BillingReconciliationJob.join(List.of(P1, P2, P3, P4),
+                List.of(chunk(P2), chunk(P3, orphan)).iterator(), missing::add);
+
+        assertEquals(List.of(0, 3), missing);
+        assertEquals(1, orphaned);
+    }
+
+    @Test
+    void matchingSetsJoinCleanlyAcrossChunkBoundaries() {
+        List<Integer> missing = new ArrayList<>();
+
+        long orphaned = BillingReconciliationJob.join(List.of(P1, P2, P3, P4),
+                List.of(chunk(P1), chunk(), chunk(P2, P3, P4)).iterator(), missing::add);
+
+        assertEquals(List.of(), missing);
+        assertEquals(0, orphaned);
+    }
+
+    @Test
+    void emptySidesAreAllMissingOrAllOrphaned() {
+        List<Integer> missing = new ArrayList<>();
+        assertEquals(0, BillingReconciliationJob.join(List.of(P1, P3), List.<BillingAccountChunk>of().iterator(),
+                missing::add));
+        assertEquals(List.of(0, 1), missing);
+
+        assertEquals(2, BillingReconciliationJob.join(List.of(), List.of(chunk(P2, P4)).iterator(),
+                index -> {
+                    throw new AssertionError("no patients to report");
+                }));
+    }
+
+    @Test
+    void unsignedOrderMatchesTheFixtures() {
+        List<UUID> sorted = new ArrayList<>(List.of(P4, P3, P2, P1));
+        sorted.sort(BillingReconciliationJob.UNSIGNED_ORDER);
+        assertEquals(List.of(P1, P2, P3, P4), sorted);
+    }
+
+    @Test
+    void digestMatchesBillingsOnlyForTheSameCountAndHash() {
+        IdSetDigest digest = new IdSetDigest();
+        digest.add(P1);
+        digest.add(P2);
+        RangeDigest billing = RangeDigest.newBuilder()
+                .setCount(2)
+                .setHash(IdSetDigest.hash(P1) + IdSetDigest.hash(P2))
+                .build();
+
+        assertTrue(BillingReconciliationJob.matches(digest, billing));
+        assertFalse(BillingReconciliationJob.matches(digest, billing.toBuilder().setCount(3).build()));
+        assertFalse(BillingReconciliationJob.matches(new IdSetDigest(), billing));
+    }
+
+    private static BillingAccountChunk chunk(UUID... ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(ids.length * 16);
+        for (UUID id : ids) {
+            buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        }
+        return BillingAccountChunk.newBuilder().setPatientIds(ByteString.copyFrom(buffer.array())).build();
+    }
+}
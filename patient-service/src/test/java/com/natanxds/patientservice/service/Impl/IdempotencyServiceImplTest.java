@@ -0,0 +1,144 @@
+package com.natanxds.patientservice.service.Impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.natanxds.patientservice.dto.PatientRequestDTO;
+import com.natanxds.patientservice.dto.PatientResponseDTO;
+import com.natanxds.patientservice.exception.IdempotencyKeyReusedException;
+import com.natanxds.patientservice.exception.IdempotencyRequestInProgressException;
+import com.natanxds.patientservice.model.IdempotencyRecord;
+import com.natanxds.patientservice.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceImplTest {
+
+    private static final String KEY = "key-1";
+    private static final PatientResponseDTO CREATED = new PatientResponseDTO(
+            "123e4567-e89b-12d3-a456-426614174000", "Jane Doe", "jane@example.com", "1 Main St", "1990-01-01");
+
+    private final IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+    private final AtomicInteger actionRuns = new AtomicInteger();
+
+    @Test
+    void anotherInstanceReplaysTheStoredResponse() {
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(1);
+        service().execute(KEY, request("jane@example.com"), this::create);
+        IdempotencyRecord stored = storedRecord();
+
+        // A second instance, with an empty cache, finds nothing yet, then loses the claim to the finished request
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(0);
+        when(repository.findById(KEY)).thenReturn(Optional.empty(), Optional.of(stored));
+
+        assertEquals(CREATED, service().execute(KEY, request("jane@example.com"), this::create));
+        assertEquals(1, actionRuns.get());
+    }
+
+    @Test
+    void theSameInstanceReplaysFromItsCache() {
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(1);
+        when(repository.findById(KEY)).thenReturn(Optional.empty());
+        IdempotencyServiceImpl service = service();
+
+        service.execute(KEY, request("jane@example.com"), this::create);
+        assertEquals(CREATED, service.execute(KEY, request("jane@example.com"), this::create));
+
+        assertEquals(1, actionRuns.get());
+        verify(repository, times(1)).claim(eq(KEY), anyString(), any(Instant.class));
+    }
+
+    @Test
+    void aDifferentRequestUnderAStoredKeyIsRejected() {
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(1);
+        service().execute(KEY, request("jane@example.com"), this::create);
+        IdempotencyRecord stored = storedRecord();
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(0);
+        when(repository.findById(KEY)).thenReturn(Optional.empty(), Optional.of(stored));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> service().execute(KEY, request("john@example.com"), this::create));
+        assertEquals(1, actionRuns.get());
+    }
+
+    @Test
+    void aClaimStillRunningElsewhereIsAConflict() {
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(1);
+        service().execute(KEY, request("jane@example.com"), this::create);
+        IdempotencyRecord pending = storedRecord();
+        pending.setResponseBody(null);
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(0);
+        when(repository.findById(KEY)).thenReturn(Optional.of(pending));
+
+        assertThrows(IdempotencyRequestInProgressException.class,
+                () -> service().execute(KEY, request("jane@example.com"), this::create));
+        assertEquals(1, actionRuns.get());
+    }
+
+    @Test
+    void aFailedRequestReleasesItsClaim() {
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(1);
+        ArgumentCaptor<Instant> claimedAt = ArgumentCaptor.forClass(Instant.class);
+
+        assertThrows(IllegalStateException.class, () -> service().execute(KEY, request("jane@example.com"), () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        verify(repository).claim(eq(KEY), anyString(), claimedAt.capture());
+        verify(repository).release(KEY, claimedAt.getValue());
+    }
+
+    @Test
+    void anAbandonedClaimIsTakenOver() {
+        Instant abandonedAt = Instant.now().minus(Duration.ofMinutes(5));
+        when(repository.claim(eq(KEY), anyString(), any(Instant.class))).thenReturn(0, 1);
+        when(repository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyRecord(KEY, "other-instance-hash", null, abandonedAt)));
+
+        assertEquals(CREATED, service().execute(KEY, request("jane@example.com"), this::create));
+        verify(repository).release(KEY, abandonedAt);
+        assertEquals(1, actionRuns.get());
+    }
+
+    private IdempotencyServiceImpl service() {
+        return new IdempotencyServiceImpl(repository, new ObjectMapper(), 24, 100, 60);
+    }
+
+    private PatientResponseDTO create() {
+        actionRuns.incrementAndGet();
+        return CREATED;
+    }
+
+    // The row the first request left behind: its claim plus the response it completed it with
+    private IdempotencyRecord storedRecord() {
+        ArgumentCaptor<String> requestHash = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Instant> claimedAt = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<String> responseBody = ArgumentCaptor.forClass(String.class);
+        verify(repository).claim(eq(KEY), requestHash.capture(), claimedAt.capture());
+        verify(repository).complete(eq(KEY), eq(claimedAt.getValue()), responseBody.capture());
+        return new IdempotencyRecord(KEY, requestHash.getValue(), responseBody.getValue(), claimedAt.getValue());
+    }
+
+    private static PatientRequestDTO request(String email) {
+        PatientRequestDTO request = new PatientRequestDTO();
+        request.setName("Jane Doe");
+        request.setEmail(email);
+        request.setAddress("1 Main St");
+        request.setDateOfBirth("1990-01-01");
+        request.setRegisteredDate("2025-01-01");
+        return request;
+    }
+}
@@ -0,0 +1,200 @@
+package com.natanxds.patientservice.service.Impl;
+
+import billing.BillingResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.natanxds.patientservice.dto.PatientRequestDTO;
+import com.natanxds.patientservice.exception.EmailAlreadyExistsException;
+import com.natanxds.patientservice.exception.PatientNotFoundException;
+import com.natanxds.patientservice.grpc.BillingAccountReconciler;
+import com.natanxds.patientservice.grpc.BillingServiceGrpcClient;
+import com.natanxds.patientservice.kafka.KafkaProducer;
+import com.natanxds.patientservice.model.Patient;
+import com.natanxds.patientservice.repository.PatientRepository;
+import com.natanxds.patientservice.repository.TableVersionRepository;
+import com.natanxds.patientservice.sharding.EmailIndex;
+import com.natanxds.patientservice.sharding.PatientShardRouter;
+import com.natanxds.patientservice.sharding.ShardingProperties;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PatientServiceImplTest {
+
+    private static final UUID EXISTING = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final BillingServiceGrpcClient billingServiceGrpcClient = mock(BillingServiceGrpcClient.class);
+    private final KafkaProducer kafkaProducer = mock(KafkaProducer.class);
+    private final TableVersionRepository tableVersionRepository = mock(TableVersionRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final InMemoryEmailIndex emailIndex = new InMemoryEmailIndex();
+
+    @BeforeEach
+    void stubBilling() {
+        when(billingServiceGrpcClient.createBillingAccountAsync(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(BillingResponse.getDefaultInstance()));
+    }
+
+    @Test
+    void createRejectsAnEmailHeldByAnotherPatient() {
+        emailIndex.reserve("taken@example.com", EXISTING);
+
+        assertThrows(EmailAlreadyExistsException.class, () -> service(1).createPatient(request("taken@example.com")));
+        verify(entityManager, never()).persist(any());
+        assertEquals(EXISTING, emailIndex.holder("taken@example.com"));
+    }
+
+    @Test
+    void createReleasesTheEmailWhenTheWriteFails() {
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(entityManager).persist(any());
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> service(1).createPatient(request("new@example.com")));
+        assertFalse(emailIndex.isReserved("new@example.com"));
+    }
+
+    @Test
+    void shardedCreateKeepsTheEmailWhenOnlyTheVersionBumpFails() {
+        when(tableVersionRepository.bump(eq("patient"), any(Instant.class)))
+                .thenThrow(new DataAccessResourceFailureException("default shard down"));
+
+        UUID id = UUID.fromString(service(2).createPatient(request("new@example.com")).id());
+
+        // The patient is committed on its shard, so its email must stay reserved
+        assertEquals(id, emailIndex.holder("new@example.com"));
+        verify(kafkaProducer).sendEvent(any(Patient.class));
+    }
+
+    @Test
+    void updateReleasesTheNewEmailWhenTheWriteFails() {
+        emailIndex.reserve("old@example.com", EXISTING);
+        when(patientRepository.existsById(EXISTING)).thenReturn(true);
+        when(patientRepository.findById(EXISTING)).thenReturn(Optional.of(patient("old@example.com")));
+        when(patientRepository.save(any(Patient.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> service(1).updatePatient(EXISTING, request("new@example.com")));
+        assertFalse(emailIndex.isReserved("new@example.com"));
+        assertEquals(EXISTING, emailIndex.holder("old@example.com"));
+    }
+
+    @Test
+    void updateMovesTheReservationToTheNewEmail() {
+        emailIndex.reserve("old@example.com", EXISTING);
+        when(patientRepository.existsById(EXISTING)).thenReturn(true);
+        when(patientRepository.findById(EXISTING)).thenReturn(Optional.of(patient("old@example.com")));
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service(1).updatePatient(EXISTING, request("new@example.com"));
+
+        assertEquals(EXISTING, emailIndex.holder("new@example.com"));
+        assertFalse(emailIndex.isReserved("old@example.com"));
+    }
+
+    @Test
+    void updateOfAnUnknownPatientReservesNothing() {
+        when(patientRepository.existsById(EXISTING)).thenReturn(false);
+
+        assertThrows(PatientNotFoundException.class, () -> service(1).updatePatient(EXISTING, request("new@example.com")));
+        assertFalse(emailIndex.isReserved("new@example.com"));
+    }
+
+    @Test
+    void deleteReleasesTheEmailOnlyWhenARowWasDeleted() {
+        emailIndex.reserve("old@example.com", EXISTING);
+        when(patientRepository.deletePatientById(EXISTING)).thenReturn(0);
+        service(1).deletePatient(EXISTING);
+        assertEquals(EXISTING, emailIndex.holder("old@example.com"));
+
+        when(patientRepository.deletePatientById(EXISTING)).thenReturn(1);
+        service(1).deletePatient(EXISTING);
+        assertFalse(emailIndex.isReserved("old@example.com"));
+        verify(kafkaProducer).publishTombstone(EXISTING);
+    }
+
+    private PatientServiceImpl service(int shards) {
+        ShardingProperties shardingProperties = new ShardingProperties();
+        if (shards > 1) {
+            shardingProperties.setEnabled(true);
+            for (int i = 0; i < shards; i++) {
+                shardingProperties.getShards().add(new ShardingProperties.DataSourceSettings());
+            }
+        }
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return new PatientServiceImpl(patientRepository, billingServiceGrpcClient, kafkaProducer,
+                new TransactionTemplate(transactionManager), mock(BillingAccountReconciler.class),
+                tableVersionRepository, new ObjectMapper(), entityManager, new PatientShardRouter(shardingProperties),
+                emailIndex, 1000);
+    }
+
+    private static PatientRequestDTO request(String email) {
+        PatientRequestDTO request = new PatientRequestDTO();
+        request.setName("Jane Doe");
+        request.setEmail(email);
+        request.setAddress("1 Main St");
+        request.setDateOfBirth("1990-01-01");
+        request.setRegisteredDate("2025-01-01");
+        return request;
+    }
+
+    private static Patient patient(String email) {
+        return new Patient(EXISTING, "Jane Doe", email, "1 Main St", LocalDate.of(1990, 1, 1),
+                LocalDate.of(2025, 1, 1));
+    }
+
+    // Same contract as ShardedEmailIndex: an email is held by at most one patient, and re-reserving it is fine
+    private static final class InMemoryEmailIndex implements EmailIndex {
+
+        private final Map<String, UUID> holders = new HashMap<>();
+
+        @Override
+        public boolean reserve(String email, UUID patientId) {
+            UUID holder = holders.putIfAbsent(email, patientId);
+            return holder == null || holder.equals(patientId);
+        }
+
+        @Override
+        public void release(String email, UUID patientId) {
+            holders.remove(email, patientId);
+        }
+
+        @Override
+        public void releasePatient(UUID patientId) {
+            holders.values().removeIf(patientId::equals);
+        }
+
+        UUID holder(String email) {
+            return holders.get(email);
+        }
+
+        boolean isReserved(String email) {
+            return holders.containsKey(email);
+        }
+    }
+}
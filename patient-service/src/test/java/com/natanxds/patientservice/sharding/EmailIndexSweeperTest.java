@@ -0,0 +1,71 @@
+package com.natanxds.patientservice.sharding;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailIndexSweeperTest {
+
+    private static final UUID KEPT = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID CHANGED = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID GONE = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    private final ShardedEmailIndex emailIndex = mock(ShardedEmailIndex.class);
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+
+    @BeforeEach
+    void createPatients() {
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table patient (id uuid primary key, email varchar(255) not null)");
+        jdbcTemplate.update("insert into patient values (?, ?)", KEPT, "kept@example.com");
+        jdbcTemplate.update("insert into patient values (?, ?)", CHANGED, "changed-new@example.com");
+    }
+
+    @Test
+    void releasesReservationsWhosePatientIsGoneOrHoldsAnotherEmail() {
+        ShardedEmailIndex.Reservation kept = new ShardedEmailIndex.Reservation("kept@example.com", KEPT);
+        ShardedEmailIndex.Reservation changed = new ShardedEmailIndex.Reservation("changed-old@example.com", CHANGED);
+        ShardedEmailIndex.Reservation gone = new ShardedEmailIndex.Reservation("gone@example.com", GONE);
+        // Two pages of two: the sweep continues after the last email of a full page
+        when(emailIndex.reservationsAfter(isNull(), any(Instant.class), eq(2))).thenReturn(List.of(changed, gone));
+        when(emailIndex.reservationsAfter(eq("gone@example.com"), any(Instant.class), eq(2))).thenReturn(List.of(kept));
+        when(emailIndex.releaseStale(any(), any(Instant.class))).thenReturn(true);
+
+        sweeper(2).sweep();
+
+        verify(emailIndex).releaseStale(eq(changed), any(Instant.class));
+        verify(emailIndex).releaseStale(eq(gone), any(Instant.class));
+        verify(emailIndex, never()).releaseStale(eq(kept), any(Instant.class));
+    }
+
+    @Test
+    void aFailedSweepIsLoggedNotThrown() {
+        when(emailIndex.reservationsAfter(any(), any(Instant.class), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("email index down"));
+
+        sweeper(2).sweep();
+
+        verify(emailIndex, never()).releaseStale(any(), any(Instant.class));
+    }
+
+    private EmailIndexSweeper sweeper(int batchSize) {
+        return new EmailIndexSweeper(emailIndex, dataSource, new PatientShardRouter(new ShardingProperties()),
+                600_000, batchSize);
+    }
+}
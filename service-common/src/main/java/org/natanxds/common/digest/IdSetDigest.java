@@ -0,0 +1,44 @@
+package org.natanxds.common.digest;
+
+import java.util.UUID;
+
+/**
+ * Order-independent digest of a set of uuids: the count and the wrapping sum of a 64-bit mix of each id.
+ * Digests of disjoint sets add up, so a range's digest is the sum of its sub-ranges'. patient-service
+ * digests its patient ids and billing-service the patient ids that have an account; reconciliation only
+ * works while both compute it with this class.
+ */
+public final class IdSetDigest {
+
+    private long count;
+    private long hash;
+
+    public void add(UUID id) {
+        count++;
+        hash += hash(id);
+    }
+
+    public void add(IdSetDigest other) {
+        count += other.count;
+        hash += other.hash;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    public static long hash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,32 @@
+package org.natanxds.common.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one message through per interval for a per-request log statement and counts the rest, so a hot path
+ * logs a steady trickle under load instead of one line per request.
+ */
+public final class LogRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAllowed = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogRateLimiter(Duration interval) {
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * @return -1 if this message should be dropped, otherwise how many were dropped since the last one let through
+     */
+    public long tryAcquire() {
+        long now = System.nanoTime();
+        long next = nextAllowed.get();
+        if ((next == Long.MIN_VALUE || now - next >= 0) && nextAllowed.compareAndSet(next, now + intervalNanos)) {
+            return suppressed.getAndSet(0);
+        }
+        suppressed.incrementAndGet();
+        return -1;
+    }
+}
@@ -0,0 +1,79 @@
+package org.natanxds.common.metrics;
+
+import io.micrometer.cloudwatch2.CloudWatchConfig;
+import io.micrometer.cloudwatch2.CloudWatchMeterRegistry;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Publishes a service's few CloudWatch meters, next to the Prometheus endpoint: patient-service's for the ECS
+ * scaling policies (see {@code LocalStack} in infrastructure), analytics-service's consumer lag for
+ * dashboards. Auto-configured in every service that has micrometer-registry-cloudwatch2 on its classpath and
+ * sets {@code management.cloudwatch.metrics.export.enabled}. Only meters whose name starts with one of
+ * {@code management.cloudwatch.metrics.export.meters} are sent, tagged with just {@code service}: the
+ * per-request tags are dropped so that each meter is a single CloudWatch metric per service, and timers
+ * also publish the configured percentiles.
+ */
+@AutoConfiguration
+@ConditionalOnClass(CloudWatchMeterRegistry.class)
+@ConditionalOnProperty(name = "management.cloudwatch.metrics.export.enabled", havingValue = "true")
+public class CloudWatchMetricsConfig {
+
+    private static final String[] REQUEST_TAGS = {"uri", "method", "status", "outcome", "exception", "error"};
+
+    @Bean(destroyMethod = "close")
+    public CloudWatchMeterRegistry cloudWatchMeterRegistry(
+            @Value("${spring.application.name}") String service,
+            @Value("${management.cloudwatch.metrics.export.namespace:PatientManagement}") String namespace,
+            @Value("${management.cloudwatch.metrics.export.step:1m}") Duration step,
+            @Value("${management.cloudwatch.metrics.export.meters}") List<String> meters,
+            @Value("${management.cloudwatch.metrics.export.percentiles:0.99}") double[] percentiles) {
+        CloudWatchConfig config = new CloudWatchConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+
+            @Override
+            public String namespace() {
+                return namespace;
+            }
+
+            @Override
+            public Duration step() {
+                return step;
+            }
+        };
+
+        CloudWatchMeterRegistry registry = new CloudWatchMeterRegistry(config, Clock.SYSTEM,
+                CloudWatchAsyncClient.create());
+        registry.config()
+                .commonTags("service", service)
+                .meterFilter(MeterFilter.denyUnless(id -> meters.stream().anyMatch(id.getName()::startsWith)))
+                .meterFilter(MeterFilter.ignoreTags(REQUEST_TAGS))
+                .meterFilter(new MeterFilter() {
+                    @Override
+                    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                        if (id.getType() != Meter.Type.TIMER) {
+                            return config;
+                        }
+                        return DistributionStatisticConfig.builder()
+                                .percentiles(percentiles)
+                                .build()
+                                .merge(config);
+                    }
+                });
+        return registry;
+    }
+}
@@ -0,0 +1,52 @@
+package org.natanxds.common.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Maps patient ids to shards. patient-service routes with it and data-generator loads with it, so rows land
+ * on the shard they are looked up on; shards and virtual nodes must match patient.sharding.*.
+ */
+public class ConsistentHashRing {
+
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    public ConsistentHashRing(int shards, int virtualNodes) {
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash("shard-" + shard + "-node-" + node), shard);
+            }
+        }
+    }
+
+    public int shardFor(UUID id) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(mix(id.getMostSignificantBits()
+                ^ Long.rotateLeft(id.getLeastSignificantBits(), 32)));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    // SplitMix64 finalizer, spreads sequential or low-entropy ids evenly around the ring
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long hash(String node) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(node.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
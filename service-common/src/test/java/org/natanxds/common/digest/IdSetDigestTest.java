@@ -0,0 +1,55 @@
+package org.natanxds.common.digest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class IdSetDigestTest {
+
+    private static final UUID A = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    private static final UUID B = UUID.fromString("f0000000-0000-0000-0000-000000000001");
+    private static final UUID C = UUID.fromString("00000000-0000-0000-8000-000000000000");
+
+    @Test
+    void hashIsPinned() {
+        // Digests cross the wire between patient-service and billing-service; changing the mix breaks mixed deploys
+        assertEquals(0xc75ab4bffd4853b8L, IdSetDigest.hash(A));
+    }
+
+    @Test
+    void digestIsTheCountAndWrappingSum() {
+        UUID a = new UUID(1, 2);
+        UUID b = new UUID(-1, -2);
+        IdSetDigest digest = digest(b, a);
+        assertEquals(2, digest.count());
+        assertEquals(IdSetDigest.hash(a) + IdSetDigest.hash(b), digest.hash());
+    }
+
+    @Test
+    void digestIgnoresOrderAndAddsUpOverDisjointSets() {
+        IdSetDigest forward = digest(A, B, C);
+        IdSetDigest backward = digest(C, B, A);
+        IdSetDigest split = digest(A);
+        split.add(digest(B, C));
+
+        assertEquals(forward.hash(), backward.hash());
+        assertEquals(forward.hash(), split.hash());
+        assertEquals(3, split.count());
+    }
+
+    @Test
+    void differentSetsOfTheSameSizeDiffer() {
+        assertNotEquals(digest(A, B).hash(), digest(A, C).hash());
+    }
+
+    private static IdSetDigest digest(UUID... ids) {
+        IdSetDigest digest = new IdSetDigest();
+        for (UUID id : ids) {
+            digest.add(id);
+        }
+        return digest;
+    }
+}
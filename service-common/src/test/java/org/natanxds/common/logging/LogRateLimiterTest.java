@@ -0,0 +1,32 @@
+package org.natanxds.common.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogRateLimiterTest {
+
+    @Test
+    void firstMessageGoesThroughAndTheRestOfTheIntervalIsCounted() {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofHours(1));
+
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+    }
+
+    @Test
+    void nextMessageAfterTheIntervalReportsHowManyWereSuppressed() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofMillis(20));
+
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        Thread.sleep(50);
+
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+    }
+}